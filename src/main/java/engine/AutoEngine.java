@@ -0,0 +1,393 @@
+package engine;
+
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The engine that chooses the engine for each pair. The common prefix and
+ * suffix of the sequences are skipped (they do not change the results), and
+ * the rest of the pair is computed by
+ * <ul>
+ * <li>the wavefront engine if its DP matrix has at least {@code threshold}
+ * cells,</li>
+ * <li>the plain engine (the DP) if the shorter sequence has at most
+ * {@code plainMax} elements,</li>
+ * <li>the banded engine if the lengths are close and the band is cheaper than
+ * the bit-parallel algorithm; the band grows while it is cheaper (see
+ * {@link BandedEngine#distance(int[], int[], long, boolean)}), so a pair
+ * that is not near-identical falls through to</li>
+ * <li>the bit-parallel algorithm ({@link Myers}) otherwise.</li>
+ * </ul>
+ * The banded engine and the bit-parallel algorithm work on the ranges of the
+ * sequences and reuse their arrays, so that these pairs allocate nothing.
+ * The limits are given by a profile: the fixed profile of the plain engine
+ * ({@link #SEQUENTIAL_PROFILE} or {@link #VECTOR_PROFILE}), or the profile in
+ * the file {@code engineProfile}, which is measured by a short probe and
+ * written to the file if the file does not exist. The engine counts the pairs
+ * and the cells by the chosen engine (see {@link #report(List)}).
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class AutoEngine extends Engine {
+
+    /**
+     * The engine chosen for a pair.
+     */
+    public enum Choice {
+        PLAIN("plain"), BIT_PARALLEL("bit-parallel"), BANDED("banded"), TILED("tiled");
+
+        private final String name;
+
+        private Choice(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * The limits of the choice: the length of the shorter sequence up to
+     * which the plain DP is faster than the bit-parallel algorithm, and the
+     * cost of a word of the bit-parallel algorithm in the cells of the DP.
+     */
+    public static class Profile {
+
+        private final int plainMax;
+        private final double wordCost;
+
+        public Profile(int plainMax, double wordCost) {
+            this.plainMax = plainMax;
+            this.wordCost = wordCost;
+        }
+
+        public int getPlainMax() {
+            return plainMax;
+        }
+
+        public double getWordCost() {
+            return wordCost;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("plainMax=%d, wordCost=%.2f", plainMax, wordCost);
+        }
+    }
+
+    /**
+     * The profiles used if the file {@code engineProfile} is not set: of the
+     * sequential engine and of the vector engine (the medians of the probes
+     * on JDK 17).
+     */
+    public static final Profile SEQUENTIAL_PROFILE = new Profile(8, 12);
+    public static final Profile VECTOR_PROFILE = new Profile(0, 5);
+
+    /**
+     * The lengths of the pairs of the probe.
+     */
+    private static final int[] PROBE_LENGTHS = {8, 16, 32, 64, 128, 256, 512};
+
+    /**
+     * The profiles by the file and the plain engine.
+     */
+    private static final ConcurrentHashMap<String, Profile> PROFILES = new ConcurrentHashMap<>();
+
+    private final Engine plain;
+    private final Engine large;
+    private final BandedEngine banded = new BandedEngine();
+    private final Myers myers = new Myers(new int[0]);
+    private final long threshold;
+    private final Profile profile;
+    private final long[] pairs = new long[Choice.values().length];
+    private final long[] cells = new long[Choice.values().length];
+
+    public AutoEngine(Engine plain, Engine large, long threshold, Profile profile) {
+        this.plain = plain;
+        this.large = large;
+        this.threshold = threshold;
+        this.profile = profile;
+    }
+
+    @Override
+    public int levenshteinDistance(int[] a, int[] b) {
+        return compute(a, b, false);
+    }
+
+    @Override
+    public int lcsLength(int[] a, int[] b) {
+        return compute(a, b, true);
+    }
+
+    private int compute(int[] a, int[] b, boolean lcs) {
+        if (a.length > b.length) {
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        int m = a.length;
+        int n = b.length;
+        int prefix = 0;
+        while (prefix < m && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < m - prefix && a[m - 1 - suffix] == b[n - 1 - suffix]) {
+            suffix++;
+        }
+        int common = prefix + suffix;
+        m -= common;
+        n -= common;
+        long size = (long) m * n;
+        if (m == 0) {
+            count(Choice.PLAIN, size);
+            return lcs ? common : n;
+        }
+        // the banded and the bit-parallel algorithms work on the ranges, the
+        // other engines on the copies of the ranges
+        if (size >= threshold) {
+            count(Choice.TILED, size);
+            int[] aa = range(a, prefix, m);
+            int[] bb = range(b, prefix, n);
+            return common(lcs, common, lcs ? large.lcsLength(aa, bb) : large.levenshteinDistance(aa, bb));
+        }
+        if (m <= profile.getPlainMax()) {
+            count(Choice.PLAIN, size);
+            int[] aa = range(a, prefix, m);
+            int[] bb = range(b, prefix, n);
+            return common(lcs, common, lcs ? plain.lcsLength(aa, bb) : plain.levenshteinDistance(aa, bb));
+        }
+        // the cost of the bit-parallel algorithm in the cells of the DP
+        long words = (long) ((m + 63) / 64) * n;
+        long budget = (long) (profile.getWordCost() * words);
+        if ((long) (2 * (n - m) + 1) * (m + 1) <= budget / 4) {
+            int d = banded.distance(a, prefix, m, b, prefix, n, budget, lcs);
+            if (d >= 0) {
+                count(Choice.BANDED, size);
+                return common(lcs, common, lcs ? (m + n - d) / 2 : d);
+            }
+        }
+        count(Choice.BIT_PARALLEL, size);
+        myers.reset(a, prefix, prefix + m);
+        int result = lcs ? myers.lcsLength(b, prefix, prefix + n) : myers.distance(b, prefix, prefix + n, Integer.MAX_VALUE - 1);
+        return common(lcs, common, result);
+    }
+
+    /**
+     * Returns the {@code length} elements of the array from {@code from} (the
+     * array itself if it is the whole array).
+     */
+    private static int[] range(int[] x, int from, int length) {
+        return from == 0 && length == x.length ? x : Arrays.copyOfRange(x, from, from + length);
+    }
+
+    /**
+     * Returns the result of the whole pair: the common prefix and suffix add
+     * to the LCS, not to the distance.
+     */
+    private static int common(boolean lcs, int common, int result) {
+        return lcs ? result + common : result;
+    }
+
+    private void count(Choice choice, long size) {
+        pairs[choice.ordinal()]++;
+        cells[choice.ordinal()] += size;
+    }
+
+    /**
+     * Returns the number of pairs computed by the engine.
+     */
+    public long getPairs(Choice choice) {
+        return pairs[choice.ordinal()];
+    }
+
+    /**
+     * Returns the number of the cells of the DP (after the common prefix and
+     * suffix) of the pairs computed by the engine.
+     */
+    public long getCells(Choice choice) {
+        return cells[choice.ordinal()];
+    }
+
+    /**
+     * Prints the shares of the pairs (and of the cells) by the engine of all
+     * given engines (e.g. of all threads); the engines other than
+     * {@code AutoEngine} are skipped.
+     */
+    public static void report(List<Engine> engines) {
+        long[] p = new long[Choice.values().length];
+        long[] c = new long[Choice.values().length];
+        for (Engine e : engines) {
+            if (e instanceof AutoEngine) {
+                AutoEngine auto = (AutoEngine) e;
+                for (Choice ch : Choice.values()) {
+                    p[ch.ordinal()] += auto.getPairs(ch);
+                    c[ch.ordinal()] += auto.getCells(ch);
+                }
+            }
+        }
+        long pp = 0;
+        long cc = 0;
+        for (int i = 0; i < p.length; i++) {
+            pp += p[i];
+            cc += c[i];
+        }
+        if (pp == 0) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Choice ch : Choice.values()) {
+            int i = ch.ordinal();
+            if (p[i] > 0) {
+                sb.append(sb.length() == 0 ? "" : ", ");
+                sb.append(String.format("%s %.1f%% (%.1f%% of cells)", ch, 100.0 * p[i] / pp, cc == 0 ? 0.0 : 100.0 * c[i] / cc));
+            }
+        }
+        System.err.printf("engines: %s%n", sb);
+    }
+
+    /**
+     * Returns the profile: the fixed profile of the plain engine if the file
+     * {@code engineProfile} is not set, the profile in the file if it exists,
+     * otherwise the profile measured by the probe of the plain engine (which
+     * is written to the file). The profile of a file is read (or measured)
+     * only once. The profile is printed if {@code verbose} is true.
+     */
+    public static Profile profile(Properties conf, Engine plain) {
+        String file = conf.getProperty("engineProfile", "");
+        if (file.isEmpty()) {
+            return plain instanceof SequentialEngine ? SEQUENTIAL_PROFILE : VECTOR_PROFILE;
+        }
+        boolean verbose = Boolean.parseBoolean(conf.getProperty("verbose", "false"));
+        return PROFILES.computeIfAbsent(file + "|" + plain.getClass().getName(), key -> {
+            try {
+                if (Files.exists(Paths.get(file))) {
+                    Properties p = new Properties();
+                    try (FileReader in = new FileReader(file)) {
+                        p.load(in);
+                    }
+                    return read(p, file);
+                }
+                Profile profile = probe(plain);
+                if (verbose) {
+                    System.err.printf("engine profile: %s%n", profile);
+                }
+                Properties p = new Properties();
+                p.setProperty("plainMax", Integer.toString(profile.getPlainMax()));
+                p.setProperty("wordCost", Double.toString(profile.getWordCost()));
+                try (FileWriter out = new FileWriter(file)) {
+                    p.store(out, "the profile of the auto engine");
+                }
+                return profile;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Returns the profile in the properties (of the file {@code file}).
+     */
+    private static Profile read(Properties p, String file) {
+        String plainMax = p.getProperty("plainMax");
+        String wordCost = p.getProperty("wordCost");
+        Profile profile;
+        try {
+            profile = new Profile(Integer.parseInt(plainMax), Double.parseDouble(wordCost));
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new AssertionError("invalid engineProfile: " + file + " (plainMax=" + plainMax + ", wordCost=" + wordCost + ")");
+        }
+        if (profile.getPlainMax() < 0) {
+            throw new AssertionError("invalid plainMax: " + plainMax + " in " + file);
+        }
+        if (!(profile.getWordCost() >= 1)) {
+            throw new AssertionError("invalid wordCost: " + wordCost + " in " + file);
+        }
+        return profile;
+    }
+
+    /**
+     * Measures the time of the plain engine and of the bit-parallel algorithm
+     * on random pairs of increasing lengths. Both engines are warmed up on all
+     * lengths first (so that the JIT compiles them), and each time is the
+     * median of several rounds. The plain engine is used up to the last
+     * length before the first length where it is slower; the cost of a word
+     * is the time of a word of the bit-parallel algorithm divided by the time
+     * of a cell of the plain engine at that first length (or at the longest
+     * length, if the plain engine is never slower).
+     */
+    static Profile probe(Engine plain) {
+        Random rnd = new Random(48);
+        int[][] as = new int[PROBE_LENGTHS.length][];
+        int[][] bs = new int[PROBE_LENGTHS.length][];
+        for (int k = 0; k < PROBE_LENGTHS.length; k++) {
+            int length = PROBE_LENGTHS[k];
+            as[k] = new int[length];
+            bs[k] = new int[length];
+            for (int i = 0; i < length; i++) {
+                as[k][i] = rnd.nextInt(32);
+                bs[k][i] = rnd.nextBoolean() ? as[k][i] : rnd.nextInt(32);
+            }
+        }
+        int[] sink = new int[1];
+        for (int round = 0; round < 10; round++) {
+            for (int k = 0; k < PROBE_LENGTHS.length; k++) {
+                time(plain, as[k], bs[k], sink);
+                time(null, as[k], bs[k], sink);
+            }
+        }
+        int plainMax = 0;
+        double wordCost = 1;
+        for (int k = 0; k < PROBE_LENGTHS.length; k++) {
+            int length = PROBE_LENGTHS[k];
+            long[] tPlain = new long[7];
+            long[] tBits = new long[7];
+            for (int round = 0; round < tPlain.length; round++) {
+                tPlain[round] = time(plain, as[k], bs[k], sink);
+                tBits[round] = time(null, as[k], bs[k], sink);
+            }
+            Arrays.sort(tPlain);
+            Arrays.sort(tBits);
+            double plainTime = Math.max(1, tPlain[tPlain.length / 2]);
+            double bitsTime = tBits[tBits.length / 2];
+            double words = (double) ((length + 63) / 64) * length;
+            double cells = (double) length * length;
+            wordCost = Math.max(1, (bitsTime / words) / (plainTime / cells));
+            if (plainTime > bitsTime) {
+                break;
+            }
+            plainMax = length;
+        }
+        if (sink[0] < 0) {
+            System.err.println(sink[0]);
+        }
+        return new Profile(plainMax, wordCost);
+    }
+
+    /**
+     * Returns the time (in ns) of a batch of the pair computed by the plain
+     * engine, or by the bit-parallel algorithm if {@code plain} is null.
+     */
+    private static long time(Engine plain, int[] a, int[] b, int[] sink) {
+        int reps = Math.max(3, 1000000 / (a.length * a.length));
+        int s = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < reps; r++) {
+            s += plain != null ? plain.levenshteinDistance(a, b) : new Myers(a).distance(b);
+        }
+        long t = System.nanoTime() - start;
+        sink[0] += s;
+        return t;
+    }
+}
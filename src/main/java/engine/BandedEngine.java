@@ -0,0 +1,107 @@
+package engine;
+
+/**
+ * The engine that computes only a band of the DP matrix around the main
+ * diagonal (Ukkonen). The band of width {@code t} on each side gives the exact
+ * distance if the distance is at most {@code t} (any path that leaves the band
+ * costs more than {@code t}); otherwise the band is doubled and the DP is
+ * repeated. The LCS is computed from the distance with insertions and
+ * deletions only ({@code m + n - 2 * lcs}). The engine is fast for
+ * near-identical pairs; the rows are reused for the next pairs (so the engine
+ * is not thread-safe).
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class BandedEngine extends Engine {
+
+    private int[] row1 = new int[64];
+    private int[] row2 = new int[64];
+
+    @Override
+    public int levenshteinDistance(int[] a, int[] b) {
+        return distance(a, b, Integer.MAX_VALUE, false);
+    }
+
+    @Override
+    public int lcsLength(int[] a, int[] b) {
+        return (a.length + b.length - distance(a, b, Integer.MAX_VALUE, true)) / 2;
+    }
+
+    /**
+     * Returns the distance (the edit distance, or the distance with
+     * insertions and deletions only if {@code indel} is true), or -1 if the
+     * band would have more than {@code maxCells} cells.
+     */
+    public int distance(int[] a, int[] b, long maxCells, boolean indel) {
+        return distance(a, 0, a.length, b, 0, b.length, maxCells, indel);
+    }
+
+    /**
+     * Returns the distance of the {@code m} elements of {@code a} from
+     * {@code aFrom} and the {@code n} elements of {@code b} from
+     * {@code bFrom} (see {@link #distance(int[], int[], long, boolean)}).
+     */
+    public int distance(int[] a, int aFrom, int m, int[] b, int bFrom, int n, long maxCells, boolean indel) {
+        if (m > n) {
+            return distance(b, bFrom, n, a, aFrom, m, maxCells, indel);
+        }
+        int t = Math.max(n - m, 8);
+        while (true) {
+            if ((long) (2 * Math.min(t, n) + 1) * (m + 1) > maxCells) {
+                return -1;
+            }
+            int d = band(a, aFrom, m, b, bFrom, n, t, indel);
+            if (d <= t || t >= n) {
+                return d;
+            }
+            t = (int) Math.min(2L * t, n);
+        }
+    }
+
+    /**
+     * Returns the distance computed in the band |i - j| &lt;= t, where i is
+     * the row (of {@code a}) and j the column (of {@code b}). The cells
+     * outside the band are infinite.
+     */
+    private int band(int[] a, int aFrom, int m, int[] b, int bFrom, int n, int t, boolean indel) {
+        int inf = m + n + 1;
+        if (row1.length < n + 2) {
+            row1 = new int[Math.max(n + 2, 2 * row1.length)];
+            row2 = new int[row1.length];
+        }
+        int[] d = row1;
+        int[] nd = row2;
+        int hi = Math.min(n, t);
+        for (int j = 0; j <= hi; j++) {
+            d[j] = j;
+        }
+        d[hi + 1] = inf;
+        for (int i = 1; i <= m; i++) {
+            int lo = Math.max(1, i - t);
+            hi = Math.min(n, i + t);
+            int c1 = a[aFrom + i - 1];
+            nd[lo - 1] = lo == 1 ? i : inf;
+            for (int j = lo; j <= hi; j++) {
+                int v;
+                if (c1 == b[bFrom + j - 1]) {
+                    v = d[j - 1];
+                } else {
+                    int up = d[j];
+                    int left = nd[j - 1];
+                    v = 1 + (up < left ? up : left);
+                    if (!indel && d[j - 1] + 1 < v) {
+                        v = d[j - 1] + 1;
+                    }
+                }
+                nd[j] = v;
+            }
+            if (hi < n) {
+                nd[hi + 1] = inf;
+            }
+            int[] p = d;
+            d = nd;
+            nd = p;
+        }
+        return d[n];
+    }
+}
@@ -0,0 +1,46 @@
+package engine;
+
+/**
+ * An edit operation in an alignment of two sequences.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class Edit {
+
+    public enum Type {
+        INSERT, DELETE, SUBSTITUTE
+    }
+
+    private final Type type;
+    private final int index1;
+    private final int index2;
+
+    public Edit(Type type, int index1, int index2) {
+        this.type = type;
+        this.index1 = index1;
+        this.index2 = index2;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the index in the first sequence, or -1 for an insertion.
+     */
+    public int getIndex1() {
+        return index1;
+    }
+
+    /**
+     * Returns the index in the second sequence, or -1 for a deletion.
+     */
+    public int getIndex2() {
+        return index2;
+    }
+
+    @Override
+    public String toString() {
+        return type + "(" + index1 + ", " + index2 + ")";
+    }
+}
@@ -0,0 +1,52 @@
+package engine;
+
+import java.util.Properties;
+
+/**
+ * The common parent of the engines that compute the edit distance and the
+ * length of the longest common subsequence of two sequences. All engines give
+ * the same results.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public abstract class Engine {
+
+    public static Engine instantiate(Properties conf) {
+        String engine = conf.getProperty("engine", "auto");
+        int tileSize = Integer.parseInt(conf.getProperty("tileSize", "512"));
+        long threshold = Long.parseLong(conf.getProperty("wavefrontThreshold", "4000000"));
+        switch (engine) {
+            case "sequential":
+                return new SequentialEngine();
+            case "vector":
+                return vectorEngine();
+            case "wavefront":
+                return new WavefrontEngine(tileSize);
+            case "auto":
+                Engine plain = vectorEngine();
+                return new AutoEngine(plain, new WavefrontEngine(tileSize), threshold, AutoEngine.profile(conf, plain));
+            default:
+                throw new AssertionError("invalid engine: " + engine);
+        }
+    }
+
+    /**
+     * Returns the engine that uses the Vector API, or the sequential engine
+     * if the Vector API is not available (JDK 8-16, or without
+     * {@code --add-modules jdk.incubator.vector}). The vector engine is
+     * compiled separately for JDK 17+, so it is loaded by reflection.
+     */
+    public static Engine vectorEngine() {
+        try {
+            Class.forName("jdk.incubator.vector.IntVector");
+            Class<?> cls = Class.forName("engine.VectorEngine");
+            return (Engine) cls.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new SequentialEngine();
+        }
+    }
+
+    public abstract int levenshteinDistance(int[] a, int[] b);
+
+    public abstract int lcsLength(int[] a, int[] b);
+}
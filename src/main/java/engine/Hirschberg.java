@@ -0,0 +1,252 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hirschberg's divide-and-conquer algorithm that computes the alignment of two
+ * sequences. Only two rows of the DP matrix are kept at a time, so the memory
+ * is linear in the length of the sequences.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class Hirschberg {
+
+    private Hirschberg() {
+    }
+
+    /**
+     * Returns the edits that transform {@code a} to {@code b}. The number of
+     * edits is the Levenshtein distance.
+     */
+    public static List<Edit> levenshteinAlignment(int[] a, int[] b) {
+        List<Edit> edits = new ArrayList<>();
+        levenshtein(a, 0, a.length, b, 0, b.length, edits);
+        return edits;
+    }
+
+    private static void levenshtein(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, List<Edit> edits) {
+        int m = aHi - aLo;
+        int n = bHi - bLo;
+        if (m == 0) {
+            insert(bLo, bHi, edits);
+            return;
+        }
+        if (n == 0) {
+            delete(aLo, aHi, edits);
+            return;
+        }
+        if (m == 1) {
+            int k = find(a[aLo], b, bLo, bHi);
+            if (k < 0) {
+                edits.add(new Edit(Edit.Type.SUBSTITUTE, aLo, bLo));
+                insert(bLo + 1, bHi, edits);
+            } else {
+                insert(bLo, k, edits);
+                insert(k + 1, bHi, edits);
+            }
+            return;
+        }
+        int mid = aLo + m / 2;
+        int[] f = distanceRow(a, aLo, mid, b, bLo, bHi);
+        int[] r = reverseDistanceRow(a, mid, aHi, b, bLo, bHi);
+        int k = 0;
+        for (int j = 1; j <= n; j++) {
+            if (f[j] + r[j] < f[k] + r[k]) {
+                k = j;
+            }
+        }
+        levenshtein(a, aLo, mid, b, bLo, bLo + k, edits);
+        levenshtein(a, mid, aHi, b, bLo + k, bHi, edits);
+    }
+
+    /**
+     * Returns the last row of the DP matrix, i.e. the distances between
+     * {@code a[aLo..aHi)} and the prefixes of {@code b[bLo..bHi)}.
+     */
+    static int[] distanceRow(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        int n = bHi - bLo;
+        int[] d = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            d[j] = j;
+        }
+        int[] nd = new int[n + 1];
+        for (int i = aLo; i < aHi; i++) {
+            nd[0] = i - aLo + 1;
+            int x = a[i];
+            for (int j = 0; j < n; j++) {
+                if (b[bLo + j] == x) {
+                    nd[j + 1] = d[j];
+                } else {
+                    nd[j + 1] = 1 + min(d[j + 1], nd[j], d[j]);
+                }
+            }
+            int[] p = d;
+            d = nd;
+            nd = p;
+        }
+        return d;
+    }
+
+    /**
+     * Returns the distances between {@code a[aLo..aHi)} and the suffixes of
+     * {@code b[bLo..bHi)}. The element at index {@code j} is the distance to
+     * {@code b[bLo + j..bHi)}.
+     */
+    static int[] reverseDistanceRow(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        int n = bHi - bLo;
+        int[] d = new int[n + 1];
+        for (int t = 0; t <= n; t++) {
+            d[t] = t;
+        }
+        int[] nd = new int[n + 1];
+        for (int i = aHi - 1; i >= aLo; i--) {
+            nd[0] = aHi - i;
+            int x = a[i];
+            for (int t = 0; t < n; t++) {
+                if (b[bHi - 1 - t] == x) {
+                    nd[t + 1] = d[t];
+                } else {
+                    nd[t + 1] = 1 + min(d[t + 1], nd[t], d[t]);
+                }
+            }
+            int[] p = d;
+            d = nd;
+            nd = p;
+        }
+        reverse(d);
+        return d;
+    }
+
+    /**
+     * Returns the edits that transform {@code a} to {@code b} so that the
+     * common elements form the longest common subsequence. There are only
+     * insertions and deletions.
+     */
+    public static List<Edit> lcsAlignment(int[] a, int[] b) {
+        List<Edit> edits = new ArrayList<>();
+        lcs(a, 0, a.length, b, 0, b.length, edits);
+        return edits;
+    }
+
+    private static void lcs(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi, List<Edit> edits) {
+        int m = aHi - aLo;
+        int n = bHi - bLo;
+        if (m == 0) {
+            insert(bLo, bHi, edits);
+            return;
+        }
+        if (n == 0) {
+            delete(aLo, aHi, edits);
+            return;
+        }
+        if (m == 1) {
+            int k = find(a[aLo], b, bLo, bHi);
+            if (k < 0) {
+                edits.add(new Edit(Edit.Type.DELETE, aLo, -1));
+                insert(bLo, bHi, edits);
+            } else {
+                insert(bLo, k, edits);
+                insert(k + 1, bHi, edits);
+            }
+            return;
+        }
+        int mid = aLo + m / 2;
+        int[] f = lcsRow(a, aLo, mid, b, bLo, bHi);
+        int[] r = reverseLcsRow(a, mid, aHi, b, bLo, bHi);
+        int k = 0;
+        for (int j = 1; j <= n; j++) {
+            if (f[j] + r[j] > f[k] + r[k]) {
+                k = j;
+            }
+        }
+        lcs(a, aLo, mid, b, bLo, bLo + k, edits);
+        lcs(a, mid, aHi, b, bLo + k, bHi, edits);
+    }
+
+    /**
+     * Returns the lengths of the LCS of {@code a[aLo..aHi)} and the prefixes
+     * of {@code b[bLo..bHi)}.
+     */
+    static int[] lcsRow(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        int n = bHi - bLo;
+        int[] d = new int[n + 1];
+        int[] nd = new int[n + 1];
+        for (int i = aLo; i < aHi; i++) {
+            int x = a[i];
+            for (int j = 0; j < n; j++) {
+                if (b[bLo + j] == x) {
+                    nd[j + 1] = d[j] + 1;
+                } else {
+                    nd[j + 1] = Math.max(d[j + 1], nd[j]);
+                }
+            }
+            int[] p = d;
+            d = nd;
+            nd = p;
+        }
+        return d;
+    }
+
+    /**
+     * Returns the lengths of the LCS of {@code a[aLo..aHi)} and the suffixes
+     * of {@code b[bLo..bHi)}.
+     */
+    static int[] reverseLcsRow(int[] a, int aLo, int aHi, int[] b, int bLo, int bHi) {
+        int n = bHi - bLo;
+        int[] d = new int[n + 1];
+        int[] nd = new int[n + 1];
+        for (int i = aHi - 1; i >= aLo; i--) {
+            int x = a[i];
+            for (int t = 0; t < n; t++) {
+                if (b[bHi - 1 - t] == x) {
+                    nd[t + 1] = d[t] + 1;
+                } else {
+                    nd[t + 1] = Math.max(d[t + 1], nd[t]);
+                }
+            }
+            int[] p = d;
+            d = nd;
+            nd = p;
+        }
+        reverse(d);
+        return d;
+    }
+
+    private static int find(int x, int[] b, int bLo, int bHi) {
+        for (int j = bLo; j < bHi; j++) {
+            if (b[j] == x) {
+                return j;
+            }
+        }
+        return -1;
+    }
+
+    private static void insert(int bLo, int bHi, List<Edit> edits) {
+        for (int j = bLo; j < bHi; j++) {
+            edits.add(new Edit(Edit.Type.INSERT, -1, j));
+        }
+    }
+
+    private static void delete(int aLo, int aHi, List<Edit> edits) {
+        for (int i = aLo; i < aHi; i++) {
+            edits.add(new Edit(Edit.Type.DELETE, i, -1));
+        }
+    }
+
+    private static void reverse(int[] d) {
+        for (int i = 0, j = d.length - 1; i < j; i++, j--) {
+            int t = d[i];
+            d[i] = d[j];
+            d[j] = t;
+        }
+    }
+
+    private static int min(int a, int b, int c) {
+        int m = a < b ? a : b;
+        if (c < m) {
+            m = c;
+        }
+        return m;
+    }
+}
@@ -0,0 +1,200 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * The bit-parallel edit distance of Myers (in the block version of Hyyro)
+ * against a fixed pattern. The columns of the DP matrix are kept as bit
+ * vectors of the vertical differences (64 rows in a word), so that a column
+ * is computed in a few word operations per 64 rows. The match vectors of the
+ * pattern are computed once, so the pattern can be compared with many texts.
+ * The same match vectors give the length of the longest common subsequence
+ * by the bit-parallel algorithm of Allison and Dix (in the version of Hyyro).
+ * The pattern can be replaced by {@link #reset(int[], int, int)}; the arrays
+ * are reused (and grow on demand), so an instance can serve many pairs
+ * without allocating. An instance is not thread-safe.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class Myers {
+
+    private int m;
+    private int blocks;
+    private long lastBit;
+    private int mask;
+    private int[] keys = new int[0];
+    private int[] slots = new int[0];
+    private long[] peq = new long[0];
+    private long[] zero = new long[0];
+    private long[] pv = new long[0];
+    private long[] mv = new long[0];
+
+    public Myers(int[] pattern) {
+        reset(pattern, 0, pattern.length);
+    }
+
+    /**
+     * Replaces the pattern by the elements {@code from} (inclusive) to
+     * {@code to} (exclusive) of the array.
+     */
+    public void reset(int[] pattern, int from, int to) {
+        m = to - from;
+        blocks = Math.max(1, (m + 63) / 64);
+        lastBit = m == 0 ? 0 : 1L << ((m - 1) % 64);
+        int size = Integer.highestOneBit(Math.max(4, 2 * m)) << 1;
+        if (keys.length < size) {
+            keys = new int[size];
+            slots = new int[size];
+        }
+        mask = size - 1;
+        Arrays.fill(slots, 0, size, -1);
+        int symbols = 0;
+        for (int i = from; i < to; i++) {
+            int h = find(pattern[i]);
+            if (slots[h] < 0) {
+                keys[h] = pattern[i];
+                slots[h] = symbols++;
+            }
+        }
+        if (peq.length < symbols * blocks) {
+            peq = new long[Math.max(symbols * blocks, 2 * peq.length)];
+        }
+        Arrays.fill(peq, 0, symbols * blocks, 0L);
+        for (int i = 0; i < m; i++) {
+            peq[slots[find(pattern[from + i])] * blocks + i / 64] |= 1L << (i % 64);
+        }
+        if (pv.length < blocks) {
+            zero = new long[blocks];
+            pv = new long[blocks];
+            mv = new long[blocks];
+        }
+    }
+
+    /**
+     * Returns the slot of the symbol in the open-addressing table.
+     */
+    private int find(int symbol) {
+        int h = (symbol * 0x9e3779b9) >>> 16 & mask;
+        while (slots[h] >= 0 && keys[h] != symbol) {
+            h = (h + 1) & mask;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the edit distance of the pattern and the text.
+     */
+    public int distance(int[] text) {
+        return distance(text, 0, text.length, Integer.MAX_VALUE - 1);
+    }
+
+    public int distance(int[] text, int limit) {
+        return distance(text, 0, text.length, limit);
+    }
+
+    /**
+     * Returns the edit distance of the pattern and the text if it is at most
+     * {@code limit}, or a value greater than {@code limit}. The computation
+     * stops once the distance cannot come back within the limit. The text is
+     * the elements {@code from} (inclusive) to {@code to} (exclusive) of the
+     * array.
+     */
+    public int distance(int[] text, int from, int to, int limit) {
+        int n = to - from;
+        if (m == 0) {
+            return n;
+        }
+        if (Math.abs(m - n) > limit) {
+            return limit + 1;
+        }
+        Arrays.fill(pv, 0, blocks, -1L);
+        Arrays.fill(mv, 0, blocks, 0L);
+        int score = m;
+        for (int j = 0; j < n; j++) {
+            int h = find(text[from + j]);
+            int s = slots[h];
+            long[] eqs = s < 0 ? zero : peq;
+            int base = s < 0 ? 0 : s * blocks;
+            // the top row grows by one in each column
+            int hin = 1;
+            for (int b = 0; b < blocks; b++) {
+                long eq = eqs[base + b];
+                long p = pv[b];
+                long mm = mv[b];
+                long hinNeg = hin < 0 ? 1 : 0;
+                long xv = eq | mm;
+                eq |= hinNeg;
+                long xh = (((eq & p) + p) ^ p) | eq;
+                long ph = mm | ~(xh | p);
+                long mh = p & xh;
+                long top = b == blocks - 1 ? lastBit : 1L << 63;
+                int hout = (ph & top) != 0 ? 1 : (mh & top) != 0 ? -1 : 0;
+                ph <<= 1;
+                mh <<= 1;
+                mh |= hinNeg;
+                ph |= hin > 0 ? 1 : 0;
+                pv[b] = mh | ~(xv | ph);
+                mv[b] = ph & xv;
+                hin = hout;
+            }
+            score += hin;
+            // the score decreases by at most one in each column
+            if (score - (n - 1 - j) > limit) {
+                return limit + 1;
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Returns the length of the longest common subsequence of the pattern
+     * and the text. The zero bits of the vector are the rows where the LCS
+     * grows (by one in each such row) in the current column.
+     */
+    public int lcsLength(int[] text) {
+        return lcsLength(text, 0, text.length);
+    }
+
+    /**
+     * Returns the length of the longest common subsequence of the pattern
+     * and the elements {@code from} (inclusive) to {@code to} (exclusive) of
+     * the text.
+     */
+    public int lcsLength(int[] text, int from, int to) {
+        if (m == 0) {
+            return 0;
+        }
+        long[] v = pv;
+        Arrays.fill(v, 0, blocks, -1L);
+        for (int j = from; j < to; j++) {
+            int s = slots[find(text[j])];
+            if (s < 0) {
+                continue;
+            }
+            int base = s * blocks;
+            long carry = 0;
+            for (int b = 0; b < blocks; b++) {
+                long x = v[b];
+                long u = x & peq[base + b];
+                // (v + u) | (v - u) with the carry through the blocks
+                long sum = x + u;
+                long c = Long.compareUnsigned(sum, x) < 0 ? 1 : 0;
+                sum += carry;
+                if (carry != 0 && sum == 0) {
+                    c = 1;
+                }
+                v[b] = sum | (x & ~u);
+                carry = c;
+            }
+        }
+        int lcs = 0;
+        for (int b = 0; b < blocks; b++) {
+            long zeros = ~v[b];
+            if (b == blocks - 1 && m % 64 != 0) {
+                zeros &= (1L << (m % 64)) - 1;
+            }
+            lcs += Long.bitCount(zeros);
+        }
+        return lcs;
+    }
+}
@@ -0,0 +1,85 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * The engine that computes the DP row by row in a single thread. Only two rows
+ * are kept at a time and they are reused for the next pairs (so the engine is
+ * not thread-safe).
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class SequentialEngine extends Engine {
+
+    private int[] row1 = new int[64];
+    private int[] row2 = new int[64];
+
+    /**
+     * Makes sure that the rows have at least {@code length} elements.
+     */
+    private void ensureRows(int length) {
+        if (row1.length < length) {
+            int n = Math.max(length, 2 * row1.length);
+            row1 = new int[n];
+            row2 = new int[n];
+        }
+    }
+
+    @Override
+    public int levenshteinDistance(int[] a, int[] b) {
+        int m = a.length;
+        ensureRows(m + 1);
+        int[] d = row1;
+        for (int i = 0; i <= m; i++) {
+            d[i] = i;
+        }
+        int[] nd = row2;
+        for (int i = 0; i < b.length; i++) {
+            nd[0] = i + 1;
+            int c2 = b[i];
+            for (int j = 0; j < m; j++) {
+                if (a[j] == c2) {
+                    nd[j + 1] = d[j];
+                } else {
+                    nd[j + 1] = 1 + min(d[j + 1], nd[j], d[j]);
+                }
+            }
+            int[] p = d;
+            d = nd;
+            nd = p;
+        }
+        return d[m];
+    }
+
+    @Override
+    public int lcsLength(int[] a, int[] b) {
+        int m = a.length;
+        ensureRows(m + 1);
+        int[] d = row1;
+        Arrays.fill(d, 0, m + 1, 0);
+        int[] nd = row2;
+        for (int i = 0; i < b.length; i++) {
+            nd[0] = 0;
+            int l2 = b[i];
+            for (int j = 0; j < m; j++) {
+                if (a[j] == l2) {
+                    nd[j + 1] = d[j] + 1;
+                } else {
+                    nd[j + 1] = Math.max(d[j + 1], nd[j]);
+                }
+            }
+            int[] p = d;
+            d = nd;
+            nd = p;
+        }
+        return d[m];
+    }
+
+    static int min(int a, int b, int c) {
+        int m = a < b ? a : b;
+        if (c < m) {
+            m = c;
+        }
+        return m;
+    }
+}
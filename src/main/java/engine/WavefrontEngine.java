@@ -0,0 +1,159 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The engine that splits the DP matrix into tiles and computes the tiles on
+ * each anti-diagonal in parallel in a fork-join pool (the current pool, or the
+ * common pool). A tile depends only on the tiles above and to the left, i.e.
+ * on the previous anti-diagonal.
+ *
+ * Only the boundaries of the tiles are kept: {@code top[j]} is the last
+ * computed row in column {@code j}, {@code side[i]} is the last computed
+ * column in row {@code i}, and {@code corner[r]} is the top-left corner of the
+ * next tile in the row of tiles {@code r}. Each of them is written only by the
+ * tiles in one row or column of tiles, which are computed one after another.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class WavefrontEngine extends Engine {
+
+    private final int tileSize;
+
+    public WavefrontEngine(int tileSize) {
+        if (tileSize < 1) {
+            throw new AssertionError("invalid tileSize: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    @Override
+    public int levenshteinDistance(int[] a, int[] b) {
+        return compute(a, b, false);
+    }
+
+    @Override
+    public int lcsLength(int[] a, int[] b) {
+        return compute(a, b, true);
+    }
+
+    private int compute(int[] a, int[] b, boolean lcs) {
+        if (b.length == 0) {
+            return lcs ? 0 : a.length;
+        }
+        Wavefront w = new Wavefront(a, b, lcs);
+        if (ForkJoinTask.inForkJoinPool()) {
+            w.invoke();
+        } else {
+            ForkJoinPool.commonPool().invoke(w);
+        }
+        return w.top[b.length];
+    }
+
+    private class Wavefront extends RecursiveAction {
+
+        private final int[] a;
+        private final int[] b;
+        private final boolean lcs;
+        private final int[] top;
+        private final int[] side;
+        private final int[] corner;
+
+        Wavefront(int[] a, int[] b, boolean lcs) {
+            this.a = a;
+            this.b = b;
+            this.lcs = lcs;
+            top = new int[b.length + 1];
+            side = new int[a.length + 1];
+            int rows = tiles(a.length);
+            corner = new int[rows];
+            if (!lcs) {
+                for (int j = 0; j <= b.length; j++) {
+                    top[j] = j;
+                }
+                for (int i = 0; i <= a.length; i++) {
+                    side[i] = i;
+                }
+                for (int r = 0; r < rows; r++) {
+                    corner[r] = r * tileSize;
+                }
+            }
+        }
+
+        private int tiles(int length) {
+            return Math.max(1, (length + tileSize - 1) / tileSize);
+        }
+
+        @Override
+        protected void compute() {
+            int rows = tiles(a.length);
+            int cols = tiles(b.length);
+            for (int d = 0; d < rows + cols - 1; d++) {
+                List<RecursiveAction> tasks = new ArrayList<>();
+                for (int r = Math.max(0, d - cols + 1); r <= Math.min(d, rows - 1); r++) {
+                    int row = r;
+                    int col = d - r;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            tile(row, col);
+                        }
+                    });
+                }
+                if (tasks.size() == 1) {
+                    tasks.get(0).invoke();
+                } else {
+                    invokeAll(tasks);
+                }
+            }
+        }
+
+        /**
+         * Computes the rows {@code (i0, i1]} and the columns {@code (j0, j1]}
+         * of the DP matrix.
+         */
+        private void tile(int r, int c) {
+            int i0 = r * tileSize;
+            int i1 = Math.min(i0 + tileSize, a.length);
+            int j0 = c * tileSize;
+            int j1 = Math.min(j0 + tileSize, b.length);
+            int w = j1 - j0;
+            int[] d = new int[w + 1];
+            int[] nd = new int[w + 1];
+            d[0] = corner[r];
+            System.arraycopy(top, j0 + 1, d, 1, w);
+            // the corner of the next tile in this row of tiles
+            corner[r] = top[j1];
+            for (int i = i0; i < i1; i++) {
+                nd[0] = side[i + 1];
+                int x = a[i];
+                if (lcs) {
+                    for (int j = 0; j < w; j++) {
+                        if (b[j0 + j] == x) {
+                            nd[j + 1] = d[j] + 1;
+                        } else {
+                            nd[j + 1] = Math.max(d[j + 1], nd[j]);
+                        }
+                    }
+                } else {
+                    for (int j = 0; j < w; j++) {
+                        if (b[j0 + j] == x) {
+                            nd[j + 1] = d[j];
+                        } else {
+                            nd[j + 1] = 1 + SequentialEngine.min(d[j + 1], nd[j], d[j]);
+                        }
+                    }
+                }
+                side[i + 1] = nd[w];
+                int[] p = d;
+                d = nd;
+                nd = p;
+            }
+            System.arraycopy(d, 1, top, j0 + 1, w);
+        }
+    }
+}
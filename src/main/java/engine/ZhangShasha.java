@@ -0,0 +1,96 @@
+package engine;
+
+import java.util.Arrays;
+
+/**
+ * The Zhang-Shasha algorithm that computes the tree edit distance with unit
+ * costs. The trees are given by the labels of the nodes in postorder, the
+ * leftmost leaves and the keyroots.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class ZhangShasha {
+
+    private ZhangShasha() {
+    }
+
+    public static int distance(int[] labels1, int[] leftmost1, int[] keyroots1,
+            int[] labels2, int[] leftmost2, int[] keyroots2) {
+        int n1 = labels1.length;
+        int n2 = labels2.length;
+        if (n1 == 0 || n2 == 0) {
+            return n1 + n2;
+        }
+        int[][] td = new int[n1][n2];
+        int[][] fd = new int[n1 + 1][n2 + 1];
+        for (int i : keyroots1) {
+            for (int j : keyroots2) {
+                forestDistance(i, j, labels1, leftmost1, labels2, leftmost2, td, fd);
+            }
+        }
+        return td[n1 - 1][n2 - 1];
+    }
+
+    private static void forestDistance(int i, int j, int[] labels1, int[] leftmost1,
+            int[] labels2, int[] leftmost2, int[][] td, int[][] fd) {
+        int li = leftmost1[i];
+        int lj = leftmost2[j];
+        fd[0][0] = 0;
+        for (int x = li; x <= i; x++) {
+            fd[x - li + 1][0] = fd[x - li][0] + 1;
+        }
+        for (int y = lj; y <= j; y++) {
+            fd[0][y - lj + 1] = fd[0][y - lj] + 1;
+        }
+        for (int x = li; x <= i; x++) {
+            int dx = x - li + 1;
+            int lx = leftmost1[x];
+            for (int y = lj; y <= j; y++) {
+                int dy = y - lj + 1;
+                int ly = leftmost2[y];
+                int del = fd[dx - 1][dy] + 1;
+                int ins = fd[dx][dy - 1] + 1;
+                int m = del < ins ? del : ins;
+                if (lx == li && ly == lj) {
+                    int ren = fd[dx - 1][dy - 1] + (labels1[x] == labels2[y] ? 0 : 1);
+                    if (ren < m) {
+                        m = ren;
+                    }
+                    fd[dx][dy] = m;
+                    td[x][y] = m;
+                } else {
+                    int t = fd[lx - li][ly - lj] + td[x][y];
+                    if (t < m) {
+                        m = t;
+                    }
+                    fd[dx][dy] = m;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a lower bound of the tree edit distance. Each node of the larger
+     * tree that has no node with the same label in the other tree must be
+     * deleted or renamed.
+     */
+    public static int lowerBound(int[] labels1, int[] labels2) {
+        int[] s1 = labels1.clone();
+        int[] s2 = labels2.clone();
+        Arrays.sort(s1);
+        Arrays.sort(s2);
+        int common = 0;
+        for (int i = 0, j = 0; i < s1.length && j < s2.length;) {
+            if (s1[i] == s2[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (s1[i] < s2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Math.max(s1.length, s2.length) - common;
+    }
+}
@@ -0,0 +1,113 @@
+package nicad;
+
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.Position;
+import engine.Edit;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import parser.Line;
+
+/**
+ * The alignment of two fragments, i.e. the inserted, deleted and substituted
+ * tokens (or lines) with their positions.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Alignment {
+
+    private final List<String> elements = new ArrayList<>();
+
+    /**
+     * Creates the alignment of the elements (restored from the journal).
+     */
+    public static Alignment of(List<String> elements) {
+        Alignment al = new Alignment();
+        al.elements.addAll(elements);
+        return al;
+    }
+
+    /**
+     * Creates the alignment of tokens. The offsets are added to the line
+     * numbers of the tokens to get the line numbers in the source files.
+     */
+    public static Alignment ofTokens(List<Edit> edits, List<JavaToken> tt1, List<JavaToken> tt2, int offset1, int offset2) {
+        Alignment al = new Alignment();
+        for (Edit e : edits) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('<').append(e.getType().name().toLowerCase());
+            if (e.getIndex1() >= 0) {
+                appendToken(sb, "1", tt1.get(e.getIndex1()), offset1);
+            }
+            if (e.getIndex2() >= 0) {
+                appendToken(sb, "2", tt2.get(e.getIndex2()), offset2);
+            }
+            sb.append("/>");
+            al.elements.add(sb.toString());
+        }
+        return al;
+    }
+
+    private static void appendToken(StringBuilder sb, String suffix, JavaToken token, int offset) {
+        if (token.getRange().isPresent()) {
+            Position p = token.getRange().get().begin;
+            sb.append(" line").append(suffix).append("=\"").append(p.line + offset).append('"');
+            sb.append(" column").append(suffix).append("=\"").append(p.column).append('"');
+        }
+        sb.append(" text").append(suffix).append("=\"").append(Xml.escape(token.getText())).append('"');
+    }
+
+    /**
+     * Creates the alignment of lines. If {@code positioned} is true, the line
+     * number is the line of the first token (with a position) plus the offset,
+     * i.e. the line in the source file; otherwise (the lines are of the
+     * pretty-printed code) the line numbers are omitted.
+     */
+    public static Alignment ofLines(List<Edit> edits, List<Line> ll1, List<Line> ll2, boolean positioned, int offset1, int offset2) {
+        Alignment al = new Alignment();
+        for (Edit e : edits) {
+            StringBuilder sb = new StringBuilder();
+            sb.append('<').append(e.getType().name().toLowerCase());
+            if (e.getIndex1() >= 0) {
+                appendLine(sb, "1", ll1.get(e.getIndex1()), positioned, offset1);
+            }
+            if (e.getIndex2() >= 0) {
+                appendLine(sb, "2", ll2.get(e.getIndex2()), positioned, offset2);
+            }
+            sb.append("/>");
+            al.elements.add(sb.toString());
+        }
+        return al;
+    }
+
+    private static void appendLine(StringBuilder sb, String suffix, Line line, boolean positioned, int offset) {
+        StringBuilder text = new StringBuilder();
+        int lineNo = -1;
+        for (JavaToken tok : line.getTokens()) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(tok.getText());
+            if (lineNo < 0 && tok.getRange().isPresent()) {
+                lineNo = tok.getRange().get().begin.line;
+            }
+        }
+        if (positioned && lineNo >= 0) {
+            sb.append(" line").append(suffix).append("=\"").append(lineNo + offset).append('"');
+        }
+        sb.append(" text").append(suffix).append("=\"").append(Xml.escape(text.toString())).append('"');
+    }
+
+    public List<String> getElements() {
+        return elements;
+    }
+
+    public void write(PrintWriter out) {
+        out.println("        <alignment>");
+        for (String e : elements) {
+            out.print("            ");
+            out.println(e);
+        }
+        out.println("        </alignment>");
+    }
+}
@@ -0,0 +1,122 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+/**
+ * The selection of the clones that are processed. The predicates are given in
+ * the configuration and use only the attributes of the clones, so that the
+ * clones are filtered before their code is read and parsed. A clone is
+ * dropped by the first predicate that rejects it.
+ *
+ * @author Zdenek Tronicek
+ */
+public class CloneFilter {
+
+    private final Map<String, ClonePredicate> predicates = new LinkedHashMap<>();
+    private final Map<String, Integer> dropped = new LinkedHashMap<>();
+
+    public CloneFilter(Properties conf) {
+        String min = conf.getProperty("minLines");
+        if (min != null) {
+            int n = Integer.parseInt(min);
+            predicates.put("minLines", (index, clone) -> clone.getNlines() >= n);
+        }
+        String max = conf.getProperty("maxLines");
+        if (max != null) {
+            int n = Integer.parseInt(max);
+            predicates.put("maxLines", (index, clone) -> clone.getNlines() <= n);
+        }
+        String files = conf.getProperty("files");
+        if (files != null) {
+            Pattern p = Pattern.compile(files);
+            predicates.put("files", (index, clone) -> anyFile(clone, p));
+        }
+        String excludeFiles = conf.getProperty("excludeFiles");
+        if (excludeFiles != null) {
+            Pattern p = Pattern.compile(excludeFiles);
+            predicates.put("excludeFiles", (index, clone) -> !anyFile(clone, p));
+        }
+        String sample = conf.getProperty("sample");
+        if (sample != null) {
+            double fraction = Double.parseDouble(sample);
+            if (fraction < 0 || fraction > 1) {
+                throw new AssertionError("invalid sample: " + sample);
+            }
+            long seed = Long.parseLong(conf.getProperty("sampleSeed", "0"));
+            predicates.put("sample", (index, clone) -> sample(seed, index) < fraction);
+        }
+        for (String name : predicates.keySet()) {
+            dropped.put(name, 0);
+        }
+    }
+
+    /**
+     * Returns true if a fragment of the clone is in a file that matches the
+     * pattern.
+     */
+    private static boolean anyFile(NiCadClone clone, Pattern p) {
+        for (NiCadSource src : clone.getSources()) {
+            if (p.matcher(src.getFile()).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a number in [0, 1) given by the seed and the index of the clone,
+     * so that the sample does not depend on the order of processing.
+     */
+    private static double sample(long seed, int index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z = z ^ (z >>> 31);
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * Returns true if there is no predicate.
+     */
+    public boolean isEmpty() {
+        return predicates.isEmpty();
+    }
+
+    /**
+     * Returns the clones that pass all predicates (in the original order).
+     */
+    public List<NiCadClone> apply(List<NiCadClone> clones) {
+        List<NiCadClone> selected = new ArrayList<>();
+        outer:
+        for (int i = 0; i < clones.size(); i++) {
+            NiCadClone clone = clones.get(i);
+            for (Map.Entry<String, ClonePredicate> e : predicates.entrySet()) {
+                if (!e.getValue().test(i, clone)) {
+                    dropped.merge(e.getKey(), 1, Integer::sum);
+                    continue outer;
+                }
+            }
+            selected.add(clone);
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the number of the clones dropped by each predicate.
+     */
+    public Map<String, Integer> getDropped() {
+        return dropped;
+    }
+
+    private interface ClonePredicate {
+
+        boolean test(int index, NiCadClone clone);
+    }
+}
@@ -0,0 +1,499 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadClones;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import engine.AutoEngine;
+import engine.Engine;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.LongConsumer;
+import parser.ParseException;
+import parser.Parser;
+
+/**
+ * The common parent of the classes that process the clones in a NiCad XML file.
+ *
+ * @author Zdenek Tronicek
+ */
+public abstract class CloneProcessor {
+
+    protected final Properties conf;
+    protected final int alignThreshold;
+    private final SourceFiles sourceFiles;
+    private final boolean lazySources;
+    private SourceBodies sourceBodies;
+    private final boolean lexerFallback;
+    private final int checkpointInterval;
+    private final boolean resume;
+    private final Sharding sharding;
+    private final CloneFilter filter;
+    private final Dedup dedup;
+    private final Sweep sweep;
+    private final Sketching sketching;
+    private final int threads;
+    private final boolean verbose;
+    private final Map<NiCadClone, Alignment> alignments = new ConcurrentHashMap<>();
+    private final Map<NiCadClone, Failure> failures = new ConcurrentHashMap<>();
+    private final Set<NiCadClone> fallbacks = ConcurrentHashMap.newKeySet();
+    private final Set<NiCadClone> estimated = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Context> contexts;
+    private final List<Engine> engines = new CopyOnWriteArrayList<>();
+    private LongConsumer latencies;
+
+    protected CloneProcessor(Properties conf) {
+        this.conf = conf;
+        alignThreshold = Integer.parseInt(conf.getProperty("alignThreshold", "-1"));
+        lexerFallback = Boolean.parseBoolean(conf.getProperty("lexerFallback", "true"));
+        checkpointInterval = Integer.parseInt(conf.getProperty("checkpointInterval", "0"));
+        resume = Boolean.parseBoolean(conf.getProperty("resume", "false"));
+        lazySources = Boolean.parseBoolean(conf.getProperty("lazySources", "false"));
+        sharding = new Sharding(conf);
+        filter = new CloneFilter(conf);
+        dedup = Boolean.parseBoolean(conf.getProperty("dedup", "false")) ? new Dedup(conf) : null;
+        sweep = Sweep.of(conf);
+        sketching = Sketching.of(conf);
+        if (sweep != null && sketching != null) {
+            throw new AssertionError("invalid sketch: the variants of the sweep are not estimated");
+        }
+        threads = Integer.parseInt(conf.getProperty("threads", "1"));
+        verbose = Boolean.parseBoolean(conf.getProperty("verbose", "false"));
+        contexts = ThreadLocal.withInitial(() -> {
+            Context ctx = new Context(conf);
+            engines.add(ctx.getEngine());
+            return ctx;
+        });
+        sourceFiles = SourceFiles.of(conf);
+    }
+
+    public void process() throws Exception {
+        String input = conf.getProperty("inputFile");
+        int i = input.lastIndexOf(".xml");
+        String output = input.substring(0, i) + getOutputSuffix();
+        NiCadClones cls = readFile(input);
+        List<NiCadClone> clones = select(cls.getClones());
+        if (sharding.isMerge()) {
+            merge(clones, output, Journal.stamp(input, conf));
+            return;
+        }
+        String result = sharding.isSharded() ? sharding.getShardFile(output, sharding.getShard()) : null;
+        String journalFile = (result != null ? result : output) + ".journal";
+        long stamp = resume || checkpointInterval > 0 || result != null ? Journal.stamp(input, conf) : 0;
+        Map<Integer, Journal.Entry> done = resume ? Journal.read(journalFile, stamp) : Collections.emptyMap();
+        Journal journal = null;
+        if (checkpointInterval > 0 || result != null) {
+            if (!resume) {
+                Files.deleteIfExists(Paths.get(journalFile));
+            }
+            int interval = checkpointInterval > 0 ? checkpointInterval : Integer.MAX_VALUE;
+            journal = new Journal(journalFile, interval, stamp);
+        }
+        List<Integer> todo = new ArrayList<>();
+        int restored = 0;
+        for (int k = 0; k < clones.size(); k++) {
+            NiCadClone clone = clones.get(k);
+            if (!sharding.contains(k, clone)) {
+                continue;
+            }
+            Journal.Entry e = done.get(k);
+            if (e != null && restore(clone, e)) {
+                restored++;
+                continue;
+            }
+            todo.add(k);
+        }
+        processAll(clones, todo, journal);
+        if (result != null) {
+            // the complete journal of the shard becomes the result
+            journal.close();
+            Files.move(Paths.get(journalFile), Paths.get(result), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            writeTextFile(clones, output);
+            if (journal != null) {
+                journal.delete();
+            }
+        }
+        if (restored > 0) {
+            System.err.printf("resumed: %d clones restored from %s%n", restored, journalFile);
+        }
+        reportFailures();
+        if (dedup != null) {
+            dedup.report();
+        }
+        if (sketching != null) {
+            sketching.report();
+        }
+        if (verbose) {
+            AutoEngine.report(engines);
+        }
+    }
+
+    /**
+     * Returns the clones that pass the filter (see {@link CloneFilter}). The
+     * indexes in the journal and the shards are the indexes in this list.
+     */
+    private List<NiCadClone> select(List<NiCadClone> clones) {
+        if (filter.isEmpty()) {
+            return clones;
+        }
+        List<NiCadClone> selected = filter.apply(clones);
+        System.err.printf("filter: %d of %d clones selected, dropped: %s%n", selected.size(), clones.size(), filter.getDropped());
+        return selected;
+    }
+
+    /**
+     * Sets the consumer of the time (in ns) that each processed clone takes
+     * (e.g. for the benchmarks), or null. With more threads, the consumer is
+     * called concurrently.
+     */
+    public void setLatencies(LongConsumer latencies) {
+        this.latencies = latencies;
+    }
+
+    /**
+     * Processes the clones with the given indexes. If there are more threads,
+     * the clones are processed in a fork-join pool, the most expensive first
+     * (see {@link #estimateCost(NiCadClone)}), so that the threads are not
+     * left waiting for a few large clones at the end. Each thread has its own
+     * context.
+     */
+    private void processAll(List<NiCadClone> clones, List<Integer> todo, Journal journal) {
+        Context ctx = contexts.get();
+        if (threads <= 1) {
+            for (int k : todo) {
+                processOne(ctx, clones.get(k), k, journal);
+            }
+            return;
+        }
+        long[] costs = new long[clones.size()];
+        for (int k : todo) {
+            costs[k] = estimateCost(clones.get(k));
+        }
+        todo.sort((k1, k2) -> Long.compare(costs[k2], costs[k1]));
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int k : todo) {
+                tasks.add(pool.submit(() -> processOne(contexts.get(), clones.get(k), k, journal)));
+            }
+            for (ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void processOne(Context ctx, NiCadClone clone, int index, Journal journal) {
+        long start = latencies != null ? System.nanoTime() : 0;
+        processSafely(ctx, clone, index);
+        if (latencies != null) {
+            latencies.accept(System.nanoTime() - start);
+        }
+        if (journal != null) {
+            Alignment al = alignments.get(clone);
+            String[] variants = sweep != null ? sweep.getResults(clone) : null;
+            journal.append(index, clone.getDistance(), clone.getSimilarity(), getStatus(clone),
+                    al != null ? al.getElements() : null, variants != null ? Arrays.asList(variants) : null);
+        }
+    }
+
+    /**
+     * Returns the estimated cost of the clone, i.e. the product of the lengths
+     * of the fragments (the size of the DP matrix).
+     */
+    private long estimateCost(NiCadClone clone) {
+        try {
+            long cost = 1;
+            for (NiCadSource src : clone.getSources()) {
+                cost *= getSourceCode(src).length();
+            }
+            return cost;
+        } catch (RuntimeException e) {
+            // the failure is reported when the clone is processed
+            return 0;
+        }
+    }
+
+    /**
+     * Merges the results of the shards and writes the output. All shards must
+     * be complete and have the stamp of the input and the configuration.
+     */
+    private void merge(List<NiCadClone> clones, String output, long stamp) throws Exception {
+        List<Map<Integer, Journal.Entry>> results = new ArrayList<>();
+        for (int s = 0; s < sharding.getShards(); s++) {
+            String file = sharding.getShardFile(output, s);
+            if (!Files.exists(Paths.get(file))) {
+                throw new IllegalStateException("shard " + s + " is not complete: " + file);
+            }
+            results.add(Journal.read(file, stamp));
+        }
+        for (int k = 0; k < clones.size(); k++) {
+            NiCadClone clone = clones.get(k);
+            int s = sharding.shardOf(k, clone);
+            Journal.Entry e = results.get(s).get(k);
+            if (e == null || !restore(clone, e)) {
+                throw new IllegalStateException("clone " + k + " is missing in shard " + s);
+            }
+        }
+        writeTextFile(clones, output);
+        reportFailures();
+    }
+
+    private String getStatus(NiCadClone clone) {
+        Failure failure = failures.get(clone);
+        if (failure != null) {
+            return failure.toString();
+        }
+        if (estimated.contains(clone)) {
+            return Journal.SKETCH;
+        }
+        return fallbacks.contains(clone) ? Journal.LEXER : Journal.OK;
+    }
+
+    /**
+     * Sets the result of the clone from the journal. Returns false if the
+     * entry is not valid (and the clone must be processed).
+     */
+    private boolean restore(NiCadClone clone, Journal.Entry e) {
+        String status = e.getStatus();
+        if (status.equals(Journal.LEXER)) {
+            fallbacks.add(clone);
+        } else if (status.equals(Journal.SKETCH)) {
+            estimated.add(clone);
+        } else if (!status.equals(Journal.OK)) {
+            Failure failure = Failure.of(status);
+            if (failure == null) {
+                return false;
+            }
+            failures.put(clone, failure);
+        }
+        if (e.getAlignment() != null) {
+            alignments.put(clone, Alignment.of(e.getAlignment()));
+        }
+        if (sweep != null && e.getVariants() != null) {
+            sweep.setResults(clone, e.getVariants().toArray(new String[0]));
+        }
+        clone.setDistance(e.getDistance());
+        clone.setSimilarity(e.getSimilarity());
+        return true;
+    }
+
+    /**
+     * Processes the clone so that no failure stops the run. If a fragment
+     * cannot be parsed, the clone is processed again with the tokens given by
+     * the lexer (unless {@code lexerFallback = false}). If this fails too, the
+     * clone gets the result of {@link #setFailed(NiCadClone)} and the failure
+     * is recorded in the output.
+     */
+    private void processSafely(Context ctx, NiCadClone clone, int index) {
+        Failure failure;
+        Throwable cause;
+        try {
+            if (clone.getSources().size() != 2) {
+                throw new CloneClassException();
+            }
+            processClone(ctx.getParser(), clone);
+            return;
+        } catch (ParseException e) {
+            if (lexerFallback) {
+                try {
+                    processClone(ctx.getLexer(), clone);
+                    fallbacks.add(clone);
+                    return;
+                } catch (RuntimeException | AssertionError | StackOverflowError e2) {
+                    // the failure of the parser is reported
+                }
+            }
+            failure = Failure.PARSE;
+            cause = e;
+        } catch (CloneClassException e) {
+            failure = Failure.CLONE_CLASS;
+            cause = e;
+        } catch (UncheckedIOException e) {
+            failure = Failure.SOURCE;
+            cause = e;
+        } catch (RuntimeException | AssertionError | StackOverflowError e) {
+            failure = Failure.INTERNAL;
+            cause = e;
+        }
+        failures.put(clone, failure);
+        setFailed(clone);
+        System.err.printf("clone %d: %s failure: %s%n", index, failure, cause);
+    }
+
+    private void reportFailures() {
+        if (failures.isEmpty() && fallbacks.isEmpty()) {
+            return;
+        }
+        Map<Failure, Integer> counts = new EnumMap<>(Failure.class);
+        for (Failure f : failures.values()) {
+            counts.merge(f, 1, Integer::sum);
+        }
+        System.err.printf("failures: %s, lexer fallback: %d%n", counts, fallbacks.size());
+    }
+
+    /**
+     * Reads the XML file. If {@code lazySources = true}, the embedded code is
+     * read only when the clone is processed (see {@link SourceBodies}).
+     */
+    private NiCadClones readFile(String fileName) throws Exception {
+        if (lazySources && sourceFiles == null) {
+            SourceBodies bodies = new SourceBodies();
+            NiCadClones cls = ReportReader.readLazy(fileName, bodies);
+            if (cls != null) {
+                sourceBodies = bodies;
+                return cls;
+            }
+            System.err.println("lazySources: the code cannot be located, reading " + fileName);
+        }
+        return ReportReader.read(fileName);
+    }
+
+    /**
+     * Returns the source code of the fragment. The code is either embedded in
+     * the XML file or read from the original file (if {@code source = files}).
+     */
+    protected String getSourceCode(NiCadSource src) {
+        return SourceFiles.getCode(sourceFiles, sourceBodies, src);
+    }
+
+    /**
+     * Returns the number that is added to the line numbers in the code of the
+     * fragment to get the line numbers in the source file.
+     */
+    protected int getLineOffset(NiCadSource src) {
+        String code = getSourceCode(src);
+        int blank = 0;
+        for (int i = 0; i < code.length() && Character.isWhitespace(code.charAt(i)); i++) {
+            if (code.charAt(i) == '\n') {
+                blank++;
+            }
+        }
+        return src.getStartline() - 1 - blank;
+    }
+
+    protected void setAlignment(NiCadClone clone, Alignment alignment) {
+        alignments.put(clone, alignment);
+    }
+
+    protected abstract void processClone(Parser parser, NiCadClone clone);
+
+    /**
+     * Returns the engine of the current thread.
+     */
+    protected Engine getEngine() {
+        return contexts.get().getEngine();
+    }
+
+    /**
+     * Returns the deduplication of the pairs, or null if {@code dedup} is not
+     * set.
+     */
+    protected Dedup getDedup() {
+        return dedup;
+    }
+
+    /**
+     * Returns the sweep over the normalization variants, or null if
+     * {@code sweep} is not set.
+     */
+    protected Sweep getSweep() {
+        return sweep;
+    }
+
+    /**
+     * Returns the use of the sketches, or null if {@code sketch} is not set.
+     */
+    protected Sketching getSketching() {
+        return sketching;
+    }
+
+    /**
+     * Marks the clone whose result is estimated from the sketches.
+     */
+    protected void setEstimated(NiCadClone clone) {
+        estimated.add(clone);
+        sketching.recordEstimated();
+    }
+
+    /**
+     * Sets the result of a clone that failed.
+     */
+    protected abstract void setFailed(NiCadClone clone);
+
+    protected abstract String getOutputSuffix();
+
+    /**
+     * Returns the attribute(s) with the result, e.g. {@code distance="3"}.
+     */
+    protected abstract String formatResult(NiCadClone clone);
+
+    private String formatFailure(NiCadClone clone) {
+        Failure failure = failures.get(clone);
+        if (failure != null) {
+            return String.format(" failure=\"%s\"", failure);
+        }
+        if (estimated.contains(clone)) {
+            return " estimated=\"sketch\"";
+        }
+        return fallbacks.contains(clone) ? " fallback=\"lexer\"" : "";
+    }
+
+    /**
+     * Thrown if a clone does not have exactly two fragments.
+     */
+    private static class CloneClassException extends RuntimeException {
+    }
+
+    private void writeTextFile(List<NiCadClone> clones, String fileName) throws Exception {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8"))) {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+            out.println("<clones>");
+            for (NiCadClone clone : clones) {
+                out.printf("    <clone nlines=\"%d\" %s%s>%n", clone.getNlines(), formatResult(clone), formatFailure(clone));
+                for (NiCadSource src : clone.getSources()) {
+                    out.printf("        <source file=\"%s\" startline=\"%d\" endline=\"%d\"", Xml.escape(src.getFile()), src.getStartline(), src.getEndline());
+                    if (sourceFiles != null) {
+                        // the code is in the original files
+                        out.println("/>");
+                        continue;
+                    }
+                    out.print(">");
+                    String code = getSourceCode(src)
+                            .replace("&", "&amp;")
+                            .replace("<", "&lt;")
+                            .replace(">", "&gt;");
+                    out.print(code);
+                    out.println("</source>");
+                }
+                if (sweep != null) {
+                    sweep.write(out, clone);
+                }
+                Alignment al = alignments.get(clone);
+                if (al != null) {
+                    al.write(out);
+                }
+                out.println("    </clone>");
+            }
+            out.println("</clones>");
+        }
+    }
+}
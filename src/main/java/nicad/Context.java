@@ -0,0 +1,43 @@
+package nicad;
+
+import engine.Engine;
+import java.util.Properties;
+import parser.LexerParser;
+import parser.Parser;
+import parser.TokenizerParser;
+
+/**
+ * The state of a worker thread that is reused for all clones processed by the
+ * thread: the parsers (with their JavaParser) and the engine (with its DP
+ * rows). None of them is thread-safe, so each thread has its own context.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Context {
+
+    private final Parser parser;
+    private final Parser lexer;
+    private final Engine engine;
+
+    public Context(Properties conf) {
+        parser = Parser.instantiate(conf);
+        // the tokenizer of the other languages does not fail
+        lexer = parser instanceof TokenizerParser ? parser : new LexerParser(conf);
+        engine = Engine.instantiate(conf);
+    }
+
+    public Parser getParser() {
+        return parser;
+    }
+
+    /**
+     * Returns the parser that is used if the fragments cannot be parsed.
+     */
+    public Parser getLexer() {
+        return lexer;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+}
@@ -0,0 +1,105 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import parser.Equivalence;
+import parser.ParseException;
+import parser.Parser;
+
+/**
+ * The fragments of a NiCad XML file (each fragment once, in the order of the
+ * first occurrence) and their encoded tokens. The fragments that cannot be
+ * parsed (not even by the lexer) are left out.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Corpus {
+
+    private final SourceFiles sourceFiles;
+    private final Parser parser;
+    private final Parser lexer;
+    private final Equivalence equivalence;
+    private final List<NiCadSource> sources = new ArrayList<>();
+
+    public Corpus(Properties conf) {
+        sourceFiles = SourceFiles.of(conf);
+        Context ctx = new Context(conf);
+        parser = ctx.getParser();
+        lexer = ctx.getLexer();
+        equivalence = new Equivalence(conf);
+    }
+
+    /**
+     * Reads the fragments of the XML file.
+     */
+    public void read(String fileName) throws Exception {
+        Map<String, NiCadSource> distinct = new LinkedHashMap<>();
+        for (NiCadClone clone : ReportReader.read(fileName).getClones()) {
+            for (NiCadSource src : clone.getSources()) {
+                distinct.putIfAbsent(keyOf(src), src);
+            }
+        }
+        sources.clear();
+        sources.addAll(distinct.values());
+    }
+
+    public static String keyOf(NiCadSource src) {
+        return src.getFile() + ":" + src.getStartline() + ":" + src.getEndline();
+    }
+
+    /**
+     * Encodes the fragments and returns the encoded tokens; the fragments
+     * that fail are removed.
+     */
+    public int[][] encode() {
+        List<int[]> codes = new ArrayList<>();
+        List<NiCadSource> encoded = new ArrayList<>();
+        int failed = 0;
+        for (NiCadSource src : sources) {
+            try {
+                codes.add(encode(getSourceCode(src)));
+                encoded.add(src);
+            } catch (RuntimeException | AssertionError | StackOverflowError e) {
+                failed++;
+            }
+        }
+        if (failed > 0) {
+            System.err.printf("corpus: %d fragments failed%n", failed);
+        }
+        sources.clear();
+        sources.addAll(encoded);
+        return codes.toArray(new int[codes.size()][]);
+    }
+
+    /**
+     * Returns the source code of the fragment (embedded in the XML file, or
+     * read from the original file if {@code source = files}).
+     */
+    public String getSourceCode(NiCadSource src) {
+        return SourceFiles.getCode(sourceFiles, null, src);
+    }
+
+    /**
+     * Returns the encoded tokens of the code (given by the lexer if the code
+     * cannot be parsed).
+     */
+    public int[] encode(String code) {
+        try {
+            return equivalence.encode(parser.parse(code, true).getTokens());
+        } catch (ParseException e) {
+            return equivalence.encode(lexer.parse(code, true).getTokens());
+        }
+    }
+
+    /**
+     * Returns the fragments; the index of a fragment is its id.
+     */
+    public List<NiCadSource> getSources() {
+        return sources;
+    }
+}
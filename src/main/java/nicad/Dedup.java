@@ -0,0 +1,115 @@
+package nicad;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The deduplication of the pairs of fragments. Each fragment is identified by
+ * the fingerprint of its normalized (encoded) tokens or lines. The pairs of
+ * equal fragments are not compared and the results of the other pairs are
+ * cached by the pair of fingerprints (at most {@code dedupCacheSize} of them),
+ * so that a pair that repeats (e.g. getters and setters) is compared only
+ * once. The result must not depend on the order of the fragments.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Dedup {
+
+    private final int cacheSize;
+    private final Map<PairKey, Integer> cache = new ConcurrentHashMap<>();
+    private final LongAdder identical = new LongAdder();
+    private final LongAdder memoized = new LongAdder();
+    private final LongAdder computed = new LongAdder();
+
+    public Dedup(Properties conf) {
+        cacheSize = Integer.parseInt(conf.getProperty("dedupCacheSize", "100000"));
+    }
+
+    /**
+     * Returns the fingerprint of the encoded tokens.
+     */
+    public static long fingerprint(int[] codes) {
+        long h = 0xcbf29ce484222325L ^ codes.length;
+        for (int c : codes) {
+            h = (h ^ c) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * Returns the fingerprint of the encoded lines.
+     */
+    public static long fingerprint(int[][] lines) {
+        long h = 0xcbf29ce484222325L ^ lines.length;
+        for (int[] line : lines) {
+            h = (h ^ fingerprint(line)) * 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    /**
+     * Returns the result of the pair of fragments with the fingerprints
+     * {@code fp1} and {@code fp2}. If the fragments are equal, the result is
+     * {@code equalResult}. Otherwise, the result is taken from the cache or
+     * computed by {@code compute}.
+     */
+    public int apply(long fp1, long fp2, boolean equal, int equalResult, IntSupplier compute) {
+        if (equal) {
+            identical.increment();
+            return equalResult;
+        }
+        PairKey key = new PairKey(Math.min(fp1, fp2), Math.max(fp1, fp2));
+        Integer cached = cache.get(key);
+        if (cached != null) {
+            memoized.increment();
+            return cached;
+        }
+        int result = compute.getAsInt();
+        computed.increment();
+        if (cache.size() < cacheSize) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public void report() {
+        System.err.printf("dedup: %d identical, %d memoized, %d computed%n", identical.sum(), memoized.sum(), computed.sum());
+    }
+
+    /**
+     * The key of a pair of fragments.
+     */
+    private static class PairKey {
+
+        private final long key1;
+        private final long key2;
+
+        PairKey(long key1, long key2) {
+            this.key1 = key1;
+            this.key2 = key2;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(key1 * 31 + key2);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PairKey)) {
+                return false;
+            }
+            PairKey that = (PairKey) obj;
+            return key1 == that.key1 && key2 == that.key2;
+        }
+    }
+}
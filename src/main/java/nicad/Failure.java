@@ -0,0 +1,50 @@
+package nicad;
+
+/**
+ * The category of the failure of a clone. The clone is not scored, but the run
+ * continues.
+ *
+ * @author Zdenek Tronicek
+ */
+public enum Failure {
+
+    /**
+     * A fragment cannot be parsed (not even by the lexer).
+     */
+    PARSE("parse"),
+    /**
+     * The clone does not have exactly two fragments.
+     */
+    CLONE_CLASS("cloneClass"),
+    /**
+     * The source code of a fragment cannot be read.
+     */
+    SOURCE("source"),
+    /**
+     * Any other error.
+     */
+    INTERNAL("internal");
+
+    private final String name;
+
+    private Failure(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the failure with the name, or null if there is none.
+     */
+    public static Failure of(String name) {
+        for (Failure f : values()) {
+            if (f.name.equals(name)) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,189 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import parser.Equivalence;
+import parser.Parser;
+
+/**
+ * This class finds all pairs of fragments in a NiCad XML file (see
+ * {@link Corpus}) whose token edit distance is at most {@code joinDistance}.
+ * The fragments are indexed by {@link MetricTree}, which is built in
+ * parallel ({@code threads}) and, if {@code metricTree} is set, written to
+ * that file and read from it by the next runs over the same fragments with
+ * the same encoding (so that the fragments are not parsed again). The pairs
+ * are written to the output as clones.
+ *
+ * <p>
+ * The tree pays off for small distances: on fragments of 50 and more tokens,
+ * it prunes most of the distances of all pairs for {@code joinDistance} up
+ * to about 5 (99% for 0, 94% for 2, 70% for 5), but only 39% for 10 and 16%
+ * for 20 (see {@code bench.MetricTreeBenchmark}).
+ *
+ * @author Zdenek Tronicek
+ */
+public class Join {
+
+    /**
+     * The options that change the encoded fragments: the options of the
+     * parser, of the equivalence and of the corpus.
+     */
+    private static final List<String> ENCODING = new ArrayList<>();
+
+    static {
+        ENCODING.addAll(Parser.OPTIONS);
+        ENCODING.addAll(Equivalence.OPTIONS);
+        ENCODING.addAll(Arrays.asList("source", "sourceRoot"));
+    }
+
+    private final Properties conf;
+    private final int distance;
+    private final int threads;
+    private final String treeFile;
+    private final Corpus corpus;
+
+    public Join(Properties conf) {
+        this.conf = conf;
+        distance = Integer.parseInt(conf.getProperty("joinDistance", "5"));
+        if (distance < 0) {
+            throw new AssertionError("invalid joinDistance: " + distance);
+        }
+        threads = Integer.parseInt(conf.getProperty("threads", "1"));
+        treeFile = conf.getProperty("metricTree");
+        corpus = new Corpus(conf);
+    }
+
+    /**
+     * Returns the stamp of the encoding and of all fragments in the XML file
+     * (including those that cannot be parsed): their locations and their
+     * code, so that a tree of changed code is not reused.
+     */
+    private long stamp(List<NiCadSource> sources) {
+        long h = 0xcbf29ce484222325L;
+        for (String opt : ENCODING) {
+            h = (h ^ (opt + "=" + conf.getProperty(opt)).hashCode()) * 0x100000001b3L;
+        }
+        for (NiCadSource src : sources) {
+            h = (h ^ Corpus.keyOf(src).hashCode()) * 0x100000001b3L;
+            String code;
+            try {
+                code = corpus.getSourceCode(src);
+            } catch (UncheckedIOException e) {
+                // the fragment fails when it is encoded
+                code = null;
+            }
+            h = (h ^ (code == null ? 0 : code.hashCode())) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Returns the tree of the fragments and sets the fragments by the id. The
+     * tree is read from the file if it has the same stamp; its fragments are
+     * then found by the labels (the locations).
+     */
+    private MetricTree tree(ForkJoinPool pool, List<NiCadSource> byId) throws Exception {
+        List<NiCadSource> sources = corpus.getSources();
+        long stamp = stamp(sources);
+        if (treeFile != null && Files.exists(Paths.get(treeFile))) {
+            MetricTree tree = MetricTree.read(Paths.get(treeFile));
+            Map<String, NiCadSource> located = new HashMap<>();
+            for (NiCadSource src : sources) {
+                located.put(Corpus.keyOf(src), src);
+            }
+            String[] labels = tree.getLabels();
+            if (tree.getStamp() == stamp && labels != null) {
+                for (String label : labels) {
+                    byId.add(located.get(label));
+                }
+                if (!byId.contains(null)) {
+                    System.err.printf("join: tree read from %s%n", treeFile);
+                    return tree;
+                }
+                byId.clear();
+            }
+            System.err.printf("join: %s is not the tree of the fragments, building%n", treeFile);
+        }
+        MetricTree tree = MetricTree.build(corpus.encode(), pool);
+        byId.addAll(corpus.getSources());
+        tree.setStamp(stamp);
+        String[] labels = new String[byId.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = Corpus.keyOf(byId.get(i));
+        }
+        tree.setLabels(labels);
+        if (treeFile != null) {
+            tree.write(Paths.get(treeFile));
+        }
+        return tree;
+    }
+
+    public void process() throws Exception {
+        String input = conf.getProperty("inputFile");
+        String output = input.substring(0, input.lastIndexOf(".xml")) + "-join.xml";
+        corpus.read(input);
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            long start = System.nanoTime();
+            List<NiCadSource> byId = new ArrayList<>();
+            MetricTree tree = tree(pool, byId);
+            long built = tree.getComputed();
+            System.err.printf("join: %d fragments, tree in %d ms (%d distances)%n",
+                    tree.size(), (System.nanoTime() - start) / 1000000, built);
+            start = System.nanoTime();
+            List<int[]> pairs = tree.selfJoin(distance, pool);
+            long n = tree.size();
+            long all = n * (n - 1) / 2;
+            long computed = tree.getComputed() - built;
+            System.err.printf("join: %d pairs within %d in %d ms, %d distances computed (%.1f%% of %d pairs)%n",
+                    pairs.size(), distance, (System.nanoTime() - start) / 1000000, computed,
+                    all == 0 ? 0.0 : 100.0 * computed / all, all);
+            write(pairs, byId, output);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void write(List<int[]> pairs, List<NiCadSource> sources, String fileName) throws Exception {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8"))) {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+            out.println("<clones>");
+            for (int[] p : pairs) {
+                out.printf("    <clone distance=\"%d\">%n", p[2]);
+                for (int k = 0; k < 2; k++) {
+                    NiCadSource src = sources.get(p[k]);
+                    out.printf("        <source file=\"%s\" startline=\"%d\" endline=\"%d\"/>%n",
+                            Xml.escape(src.getFile()), src.getStartline(), src.getEndline());
+                }
+                out.println("    </clone>");
+            }
+            out.println("</clones>");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("expected argument: properties file (e.g. JavaAPI.properties)");
+            System.exit(0);
+        }
+        Properties conf = new Properties();
+        try (FileReader in = new FileReader(args[0])) {
+            conf.load(in);
+        }
+        Join join = new Join(conf);
+        join.process();
+    }
+}
@@ -0,0 +1,361 @@
+package nicad;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+/**
+ * The journal of the results of the processed clones. Each line holds the
+ * index of a clone, its distance, similarity and status, and optionally the
+ * elements of its alignment (see {@link Alignment}) and the results of the
+ * variants of the sweep (see {@link Sweep}). The journal is
+ * written to the disk after every {@code interval} clones, so that a run that
+ * was killed can be resumed. An incomplete last line (after a crash) is
+ * ignored when the journal is read and cut off when it is opened again, so
+ * that the next entry starts on a new line. The first line holds the stamp of the input and of the
+ * configuration (see {@link #stamp(String, Properties)}); a journal with
+ * another stamp is not read.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Journal implements Closeable {
+
+    /**
+     * The status of a clone that was processed without a failure.
+     */
+    public static final String OK = "ok";
+    /**
+     * The status of a clone that was processed by the lexer only.
+     */
+    public static final String LEXER = "lexer";
+    /**
+     * The status of a clone whose result is estimated from the sketches.
+     */
+    public static final String SKETCH = "sketch";
+
+    /**
+     * The options that do not change the results (and are not stamped).
+     */
+    private static final List<String> UNSTAMPED = Arrays.asList("inputFile", "resume", "checkpointInterval",
+            "shard", "threads", "verbose", "engine", "engineProfile", "tileSize", "wavefrontThreshold");
+    private static final String STAMP = "stamp";
+
+    private final Path path;
+    private final int interval;
+    private final FileOutputStream stream;
+    private final Writer out;
+    private int pending;
+
+    /**
+     * Opens the journal for appending. The incomplete last line is cut off
+     * and the stamp is written to a new (or empty) journal.
+     */
+    public Journal(String fileName, int interval, long stamp) throws IOException {
+        path = Paths.get(fileName);
+        this.interval = interval;
+        long size = Files.exists(path) ? Files.size(path) : 0;
+        long complete = completeLength(path, size);
+        if (complete < size) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                ch.truncate(complete);
+            }
+        }
+        stream = new FileOutputStream(fileName, true);
+        out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+        if (complete == 0) {
+            out.write(STAMP + "\t" + Long.toHexString(stamp) + "\n");
+            sync();
+        }
+    }
+
+    /**
+     * Returns the stamp of the input file (its content) and of the
+     * configuration (all options except those that do not change the results,
+     * such as {@code threads} or {@code shard}). The input and the
+     * configuration give the selected clones and the shards.
+     */
+    public static long stamp(String input, Properties conf) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(Paths.get(input))) {
+            byte[] buf = new byte[65536];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                crc.update(buf, 0, n);
+            }
+        }
+        long h = 0xcbf29ce484222325L;
+        h = (h ^ crc.getValue()) * 0x100000001b3L;
+        for (String key : new TreeSet<>(conf.stringPropertyNames())) {
+            if (!UNSTAMPED.contains(key)) {
+                h = (h ^ (key + "=" + conf.getProperty(key)).hashCode()) * 0x100000001b3L;
+            }
+        }
+        return h;
+    }
+
+    public void append(int index, Integer distance, Integer similarity, String status) {
+        append(index, distance, similarity, status, null, null);
+    }
+
+    /**
+     * Appends the result of a clone. The alignment (or the results of the
+     * variants) is {@code null} if the clone has no alignment (or variants).
+     */
+    public synchronized void append(int index, Integer distance, Integer similarity, String status,
+            List<String> alignment, List<String> variants) {
+        try {
+            String line = index + "\t" + format(distance) + "\t" + format(similarity) + "\t" + status;
+            if (alignment != null || variants != null) {
+                line += "\t" + format(alignment);
+            }
+            if (variants != null) {
+                line += "\t" + format(variants);
+            }
+            out.write(line + "\n");
+            if (++pending >= interval) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the length of the complete lines of the file (up to and
+     * including the last newline).
+     */
+    private static long completeLength(Path p, long size) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            long end = size;
+            while (end > 0) {
+                long start = Math.max(0, end - buf.capacity());
+                buf.clear();
+                buf.limit((int) (end - start));
+                while (buf.hasRemaining() && ch.read(buf, start + buf.position()) > 0) {
+                    // read the whole chunk
+                }
+                for (int i = buf.position() - 1; i >= 0; i--) {
+                    if (buf.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+                end = start;
+            }
+            return 0;
+        }
+    }
+
+    private static String format(Integer value) {
+        return value == null ? "-" : value.toString();
+    }
+
+    /**
+     * Formats the elements as a single field: the backslashes, tabs and
+     * newlines are escaped and the elements are separated by {@code \n}.
+     */
+    private static String format(List<String> elements) {
+        if (elements == null) {
+            return "-";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < elements.size(); k++) {
+            String e = elements.get(k);
+            if (k > 0) {
+                sb.append("\\n");
+            }
+            for (int i = 0; i < e.length(); i++) {
+                char c = e.charAt(i);
+                switch (c) {
+                    case '\\':
+                        sb.append("\\\\");
+                        break;
+                    case '\t':
+                        sb.append("\\t");
+                        break;
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+                    case '\r':
+                        sb.append("\\r");
+                        break;
+                    default:
+                        sb.append(c);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private void sync() throws IOException {
+        out.flush();
+        stream.getFD().sync();
+        pending = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sync();
+        out.close();
+    }
+
+    /**
+     * Closes and deletes the journal (when the output is written).
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Reads the journal. Returns the entries by the indexes of the clones.
+     *
+     * @throws IllegalStateException if the journal has another stamp (it was
+     * written for another input or configuration)
+     */
+    public static Map<Integer, Entry> read(String fileName, long stamp) throws IOException {
+        Map<Integer, Entry> entries = new HashMap<>();
+        Path p = Paths.get(fileName);
+        long size = Files.exists(p) ? Files.size(p) : 0;
+        long complete = completeLength(p, size);
+        if (complete == 0) {
+            return entries;
+        }
+        try (BufferedReader in = Files.newBufferedReader(p, StandardCharsets.UTF_8)) {
+            String line = in.readLine();
+            if (!(STAMP + "\t" + Long.toHexString(stamp)).equals(line)) {
+                throw new IllegalStateException("the journal is not of this input and configuration: " + fileName);
+            }
+            // a line is added once the next line is read (the last line only
+            // if it is complete)
+            String prev = null;
+            while ((line = in.readLine()) != null) {
+                if (prev != null) {
+                    add(entries, prev);
+                }
+                prev = line;
+            }
+            if (prev != null && complete == size) {
+                add(entries, prev);
+            }
+        }
+        return entries;
+    }
+
+    private static void add(Map<Integer, Entry> entries, String line) {
+        String[] f = line.split("\t", -1);
+        if (f.length < 4 || f.length > 6) {
+            return;
+        }
+        try {
+            List<String> alignment = f.length > 4 ? parseElements(f[4]) : null;
+            List<String> variants = f.length > 5 ? parseElements(f[5]) : null;
+            Entry e = new Entry(parse(f[1]), parse(f[2]), f[3], alignment, variants);
+            entries.put(Integer.parseInt(f[0]), e);
+        } catch (NumberFormatException ex) {
+            // a damaged line
+        }
+    }
+
+    private static Integer parse(String value) {
+        return value.equals("-") ? null : Integer.valueOf(value);
+    }
+
+    private static List<String> parseElements(String field) {
+        if (field.equals("-")) {
+            return null;
+        }
+        List<String> elements = new ArrayList<>();
+        if (field.isEmpty()) {
+            return elements;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c != '\\' || i + 1 == field.length()) {
+                sb.append(c);
+                continue;
+            }
+            char d = field.charAt(++i);
+            if (d == 'n') {
+                elements.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(d == 't' ? '\t' : d == 'r' ? '\r' : d);
+            }
+        }
+        elements.add(sb.toString());
+        return elements;
+    }
+
+    /**
+     * The result of a clone.
+     */
+    public static class Entry {
+
+        private final Integer distance;
+        private final Integer similarity;
+        private final String status;
+        private final List<String> alignment;
+        private final List<String> variants;
+
+        public Entry(Integer distance, Integer similarity, String status, List<String> alignment, List<String> variants) {
+            this.distance = distance;
+            this.similarity = similarity;
+            this.status = status;
+            this.alignment = alignment;
+            this.variants = variants;
+        }
+
+        public Integer getDistance() {
+            return distance;
+        }
+
+        public Integer getSimilarity() {
+            return similarity;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        /**
+         * Returns the elements of the alignment, or {@code null} if the clone
+         * has no alignment.
+         */
+        public List<String> getAlignment() {
+            return alignment;
+        }
+
+        /**
+         * Returns the results of the variants of the sweep, or {@code null}
+         * if the clone has no variants.
+         */
+        public List<String> getVariants() {
+            return variants;
+        }
+    }
+}
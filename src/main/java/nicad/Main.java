@@ -0,0 +1,49 @@
+package nicad;
+
+import java.io.FileReader;
+import java.util.Properties;
+
+/**
+ * The entry point that runs the command given by the {@code command} property:
+ * {@code distance}, {@code similarity}, {@code treedistance},
+ * {@code nearest} (see {@link Nearest}) or {@code join} (see {@link Join}).
+ *
+ * @author Zdenek Tronicek
+ */
+public class Main {
+
+    public static CloneProcessor instantiate(Properties conf) {
+        String command = conf.getProperty("command", "distance");
+        switch (command) {
+            case "distance":
+                return new EditDistance(conf);
+            case "similarity":
+                return new Similarity(conf);
+            case "treedistance":
+                return new TreeDistance(conf);
+            default:
+                throw new AssertionError("invalid command: " + command);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("expected argument: properties file (e.g. config.properties)");
+            System.exit(0);
+        }
+        Properties conf = new Properties();
+        try (FileReader in = new FileReader(args[0])) {
+            conf.load(in);
+        }
+        if (conf.getProperty("command", "distance").equals("nearest")) {
+            new Nearest(conf).process();
+            return;
+        }
+        if (conf.getProperty("command", "distance").equals("join")) {
+            new Join(conf).process();
+            return;
+        }
+        CloneProcessor proc = instantiate(conf);
+        proc.process();
+    }
+}
@@ -0,0 +1,323 @@
+package nicad;
+
+import engine.Myers;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * The vantage-point tree of encoded fragments by the token edit distance.
+ * Since the distance is a metric, a subtree whose distances from the vantage
+ * point are all too far (or too near) from the distance of the query is
+ * pruned by the triangle inequality, without computing the distances of its
+ * fragments.
+ *
+ * <p>
+ * The tree is kept in three arrays by the position in the permutation of the
+ * fragments: the subtree at positions [lo, hi) has the vantage point at
+ * {@code lo}, the nearer half of the other fragments (within
+ * {@code radius[lo]} of it) at [lo + 1, {@code split[lo]}) and the farther
+ * half (at least {@code radius[lo]} from it) at [{@code split[lo]}, hi). The subtrees are therefore built in parallel
+ * without any synchronization, and the tree is written to the disk as it is.
+ *
+ * @author Zdenek Tronicek
+ */
+public class MetricTree {
+
+    private static final int MAGIC = 0x43445650;
+    private static final int PARALLEL_SIZE = 2048;
+
+    private final int[][] fragments;
+    private final int[] ids;
+    private final int[] radius;
+    private final int[] split;
+    private long stamp;
+    private String[] labels;
+    private final LongAdder computed = new LongAdder();
+
+    private MetricTree(int[][] fragments, int[] ids, int[] radius, int[] split) {
+        this.fragments = fragments;
+        this.ids = ids;
+        this.radius = radius;
+        this.split = split;
+    }
+
+    /**
+     * Builds the tree of the encoded fragments in the pool; the fragment ids
+     * are the indexes in the array.
+     */
+    public static MetricTree build(int[][] fragments, ForkJoinPool pool) {
+        int n = fragments.length;
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = i;
+        }
+        MetricTree tree = new MetricTree(fragments, ids, new int[n], new int[n]);
+        pool.invoke(tree.new Build(0, n));
+        return tree;
+    }
+
+    /**
+     * Builds the subtree at [lo, hi).
+     */
+    private class Build extends RecursiveAction {
+
+        private final int lo;
+        private final int hi;
+
+        Build(int lo, int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            List<Build> forked = new ArrayList<>();
+            int lo = this.lo;
+            int hi = this.hi;
+            while (hi - lo > 1) {
+                // a pseudo-random vantage point (the same for every build)
+                Random rnd = new Random(31L * lo + hi);
+                swap(lo, lo + rnd.nextInt(hi - lo));
+                Myers vantage = new Myers(fragments[ids[lo]]);
+                long[] keys = new long[hi - lo - 1];
+                for (int i = lo + 1; i < hi; i++) {
+                    keys[i - lo - 1] = (long) vantage.distance(fragments[ids[i]]) << 32 | ids[i];
+                }
+                computed.add(keys.length);
+                Arrays.sort(keys);
+                // the split by the rank, so that equal distances do not make
+                // the tree a chain
+                int half = (keys.length + 1) / 2;
+                for (int i = 0; i < keys.length; i++) {
+                    ids[lo + 1 + i] = (int) keys[i];
+                }
+                int s = lo + 1 + half;
+                radius[lo] = (int) (keys[half - 1] >>> 32);
+                split[lo] = s;
+                // the outer subtree is not larger than the inner one
+                Build outer = new Build(s, hi);
+                if (hi - lo > PARALLEL_SIZE) {
+                    outer.fork();
+                    forked.add(outer);
+                } else {
+                    outer.compute();
+                }
+                lo = lo + 1;
+                hi = s;
+            }
+            if (hi > lo) {
+                split[lo] = hi;
+            }
+            for (Build b : forked) {
+                b.join();
+            }
+        }
+
+        private void swap(int i, int j) {
+            int t = ids[i];
+            ids[i] = ids[j];
+            ids[j] = t;
+        }
+    }
+
+    public int size() {
+        return fragments.length;
+    }
+
+    public int[] getFragment(int id) {
+        return fragments[id];
+    }
+
+    /**
+     * Returns the number of distances computed so far (by the build and the
+     * queries).
+     */
+    public long getComputed() {
+        return computed.sum();
+    }
+
+    /**
+     * Returns the fragments within the distance {@code r} of the encoded
+     * query (in no particular order). The method is thread-safe.
+     */
+    public List<NearestIndex.Neighbor> range(int[] codes, int r) {
+        List<NearestIndex.Neighbor> result = new ArrayList<>();
+        range(new Myers(codes), codes.length, r, 0, fragments.length, -1, result);
+        return result;
+    }
+
+    /**
+     * Adds the fragments in the subtree at [lo, hi) that are at positions
+     * greater than {@code from} and whose distance is at most {@code r}. The
+     * subtrees before {@code from} are skipped (their pairs with the query are
+     * found by the queries of their fragments).
+     */
+    private void range(Myers query, int length, int r, int lo, int hi, int from, List<NearestIndex.Neighbor> result) {
+        long count = 0;
+        while (lo < hi) {
+            int mu = radius[lo];
+            int[] vantage = fragments[ids[lo]];
+            int d;
+            if (Math.abs(vantage.length - length) > mu + r) {
+                // the distance is at least the difference of the lengths
+                d = mu + r + 1;
+            } else {
+                // the exact distance is needed only up to mu + r
+                d = query.distance(vantage, mu + r);
+                count++;
+            }
+            if (d <= r && lo > from) {
+                result.add(new NearestIndex.Neighbor(ids[lo], d));
+            }
+            int s = split[lo];
+            boolean inner = d - r <= mu && s > lo + 1 && s - 1 > from;
+            boolean outer = d + r >= mu && hi > s && hi - 1 > from;
+            if (inner && outer) {
+                range(query, length, r, lo + 1, s, from, result);
+                lo = s;
+            } else if (inner) {
+                hi = s;
+                lo = lo + 1;
+            } else if (outer) {
+                lo = s;
+            } else {
+                break;
+            }
+        }
+        computed.add(count);
+    }
+
+    /**
+     * Returns the pairs of fragments within the distance {@code r} of each
+     * other as the triples (id1, id2, distance), where id1 &lt; id2, ordered
+     * by the ids. The fragments are queried in parallel in the pool; each
+     * fragment looks for the fragments after it in the tree, so that every
+     * pair is found once.
+     */
+    public List<int[]> selfJoin(int r, ForkJoinPool pool) {
+        int n = fragments.length;
+        List<List<NearestIndex.Neighbor>> found = new ArrayList<>(Collections.nCopies(n, null));
+        pool.submit(() -> IntStream.range(0, n).parallel().forEach(p -> {
+            List<NearestIndex.Neighbor> js = new ArrayList<>();
+            int[] f = fragments[ids[p]];
+            range(new Myers(f), f.length, r, 0, n, p, js);
+            found.set(p, js);
+        })).join();
+        List<int[]> pairs = new ArrayList<>();
+        for (int p = 0; p < n; p++) {
+            int i = ids[p];
+            for (NearestIndex.Neighbor j : found.get(p)) {
+                int id = j.getId();
+                pairs.add(i < id ? new int[]{i, id, j.getDistance()} : new int[]{id, i, j.getDistance()});
+            }
+        }
+        pairs.sort((p1, p2) -> p1[0] != p2[0] ? Integer.compare(p1[0], p2[0]) : Integer.compare(p1[1], p2[1]));
+        return pairs;
+    }
+
+    /**
+     * Returns the stamp of the tree, which identifies the corpus and the
+     * encoding of the fragments (0 if it is not set).
+     */
+    public long getStamp() {
+        return stamp;
+    }
+
+    public void setStamp(long stamp) {
+        this.stamp = stamp;
+    }
+
+    /**
+     * Returns the labels of the fragments by the id (e.g. their locations),
+     * or null if they are not set.
+     */
+    public String[] getLabels() {
+        return labels;
+    }
+
+    public void setLabels(String[] labels) {
+        this.labels = labels;
+    }
+
+    /**
+     * Writes the tree (with the fragments, the stamp and the labels) to the
+     * file.
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeLong(stamp);
+            out.writeInt(fragments.length);
+            for (int[] f : fragments) {
+                out.writeInt(f.length);
+                for (int c : f) {
+                    out.writeInt(c);
+                }
+            }
+            for (int i = 0; i < fragments.length; i++) {
+                out.writeInt(ids[i]);
+                out.writeInt(radius[i]);
+                out.writeInt(split[i]);
+            }
+            out.writeBoolean(labels != null);
+            if (labels != null) {
+                for (String label : labels) {
+                    out.writeUTF(label);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the tree that was written by {@link #write(Path)}.
+     */
+    public static MetricTree read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("not a metric tree: " + file);
+            }
+            long stamp = in.readLong();
+            int n = in.readInt();
+            int[][] fragments = new int[n][];
+            for (int i = 0; i < n; i++) {
+                int[] f = new int[in.readInt()];
+                for (int j = 0; j < f.length; j++) {
+                    f[j] = in.readInt();
+                }
+                fragments[i] = f;
+            }
+            int[] ids = new int[n];
+            int[] radius = new int[n];
+            int[] split = new int[n];
+            for (int i = 0; i < n; i++) {
+                ids[i] = in.readInt();
+                radius[i] = in.readInt();
+                split[i] = in.readInt();
+            }
+            MetricTree tree = new MetricTree(fragments, ids, radius, split);
+            tree.setStamp(stamp);
+            if (in.readBoolean()) {
+                String[] labels = new String[n];
+                for (int i = 0; i < n; i++) {
+                    labels[i] = in.readUTF();
+                }
+                tree.setLabels(labels);
+            }
+            return tree;
+        }
+    }
+}
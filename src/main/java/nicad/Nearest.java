@@ -0,0 +1,114 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * This class finds the fragments nearest to the given code by the token edit
+ * distance. The corpus is given by the fragments in a NiCad XML file (see
+ * {@link Corpus}); the fragments are parsed and encoded once and indexed by
+ * {@link NearestIndex}. The queries are the files in {@code query}
+ * (comma-separated) and the {@code nearestK} nearest fragments of each query
+ * that are at most {@code nearestMaxDistance} far (default 10) are written to
+ * the output. The limit keeps the queries fast: an exact top-10 query over 1M
+ * fragments (a large {@code nearestMaxDistance}) verifies about a half of the
+ * fragments and takes about 1 s, with the default limit it takes about 20 ms
+ * (see {@code bench.NearestBenchmark}).
+ *
+ * @author Zdenek Tronicek
+ */
+public class Nearest {
+
+    private final Properties conf;
+    private final int k;
+    private final int q;
+    private final int maxDistance;
+    private final Corpus corpus;
+    private NearestIndex index;
+
+    public Nearest(Properties conf) {
+        this.conf = conf;
+        k = Integer.parseInt(conf.getProperty("nearestK", "10"));
+        q = Integer.parseInt(conf.getProperty("nearestQ", "3"));
+        maxDistance = Integer.parseInt(conf.getProperty("nearestMaxDistance", "10"));
+        corpus = new Corpus(conf);
+    }
+
+    /**
+     * Builds the index of the fragments in the XML file (see {@link Corpus}).
+     */
+    public void build(String fileName) throws Exception {
+        long start = System.nanoTime();
+        corpus.read(fileName);
+        index = new NearestIndex(corpus.encode(), q);
+        System.err.printf("nearest: %d fragments indexed in %d ms%n",
+                index.size(), (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Returns the k fragments nearest to the code (at most
+     * {@code nearestMaxDistance} far), the nearest first.
+     */
+    public List<NearestIndex.Neighbor> query(String code, int k) {
+        return index.query(corpus.encode(code), k, maxDistance);
+    }
+
+    /**
+     * Returns the fragment with the given id (see
+     * {@link NearestIndex.Neighbor#getId()}).
+     */
+    public NiCadSource getSource(int id) {
+        return corpus.getSources().get(id);
+    }
+
+    public void process() throws Exception {
+        String input = conf.getProperty("inputFile");
+        String queries = conf.getProperty("query");
+        if (queries == null) {
+            throw new AssertionError("invalid query: null");
+        }
+        build(input);
+        String output = input.substring(0, input.lastIndexOf(".xml")) + "-nearest.xml";
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(output), "UTF-8"))) {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+            out.println("<nearest>");
+            for (String file : queries.split(",")) {
+                file = file.trim();
+                String code = new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8);
+                long start = System.nanoTime();
+                List<NearestIndex.Neighbor> result = query(code, k);
+                long time = (System.nanoTime() - start) / 1000;
+                out.printf("    <query file=\"%s\" k=\"%d\" time=\"%d\">%n", Xml.escape(file), k, time);
+                for (NearestIndex.Neighbor n : result) {
+                    NiCadSource src = getSource(n.getId());
+                    out.printf("        <source file=\"%s\" startline=\"%d\" endline=\"%d\" distance=\"%d\"/>%n",
+                            Xml.escape(src.getFile()), src.getStartline(), src.getEndline(), n.getDistance());
+                }
+                out.println("    </query>");
+            }
+            out.println("</nearest>");
+        }
+        index.report();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("expected argument: properties file (e.g. JavaAPI.properties)");
+            System.exit(0);
+        }
+        Properties conf = new Properties();
+        try (FileReader in = new FileReader(args[0])) {
+            conf.load(in);
+        }
+        Nearest nearest = new Nearest(conf);
+        nearest.process();
+    }
+}
@@ -0,0 +1,334 @@
+package nicad;
+
+import engine.Myers;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The index of encoded fragments that finds the k fragments nearest to a
+ * query by the token edit distance. The index keeps the q-gram postings of
+ * the fragments: for each q-gram (hashed to a bucket), the fragments that
+ * contain it and how many times.
+ *
+ * <p>
+ * A query counts the q-grams that it shares with each fragment. If two
+ * sequences of lengths m and n have distance d, they share at least
+ * max(m, n) - q + 1 - q * d q-grams, so the shared q-grams and the lengths
+ * give a lower bound of the distance. The candidates are verified in the
+ * order of their lower bounds until the bound exceeds the k-th best distance
+ * found so far, by the bit-parallel algorithm (see {@link Myers}), which
+ * stops once the distance exceeds the k-th best. The fragments that share no
+ * q-gram are visited by length, the nearest lengths first. The q-grams that
+ * occur in many fragments are not counted by the query; the bounds then
+ * assume that every fragment shares them. The results are exact.
+ *
+ * @author Zdenek Tronicek
+ */
+public class NearestIndex {
+
+    private final int q;
+    private final int[][] fragments;
+    private final int mask;
+    private final int[] postingStart;
+    private final int[] postingIds;
+    private final int[] postingCounts;
+    private final int[] byLength;
+    private final int[] sortedLengths;
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder verified = new LongAdder();
+
+    /**
+     * Builds the index of the encoded fragments (see
+     * {@link parser.Equivalence#encode}); the fragment ids are the indexes in
+     * the array.
+     */
+    public NearestIndex(int[][] fragments, int q) {
+        if (q < 1) {
+            throw new AssertionError("invalid nearestQ: " + q);
+        }
+        this.q = q;
+        this.fragments = fragments;
+        long total = 0;
+        for (int[] f : fragments) {
+            total += Math.max(0, f.length - q + 1);
+        }
+        // the q-grams are hashed to buckets; a collision only makes the lower
+        // bounds weaker
+        int buckets = Integer.highestOneBit((int) Math.min(1 << 26, Math.max(1 << 10, total)));
+        mask = buckets - 1;
+        postingStart = new int[buckets + 1];
+        for (int[] f : fragments) {
+            int[] p = profile(f);
+            for (int i = 0; i < p.length; i += 2) {
+                postingStart[p[i] + 1]++;
+            }
+        }
+        for (int g = 0; g < buckets; g++) {
+            postingStart[g + 1] += postingStart[g];
+        }
+        postingIds = new int[postingStart[buckets]];
+        postingCounts = new int[postingIds.length];
+        int[] next = Arrays.copyOf(postingStart, buckets);
+        for (int id = 0; id < fragments.length; id++) {
+            int[] p = profile(fragments[id]);
+            for (int i = 0; i < p.length; i += 2) {
+                int k = next[p[i]]++;
+                postingIds[k] = id;
+                postingCounts[k] = p[i + 1];
+            }
+        }
+        Integer[] order = new Integer[fragments.length];
+        for (int id = 0; id < order.length; id++) {
+            order[id] = id;
+        }
+        Arrays.sort(order, (id1, id2) -> Integer.compare(fragments[id1].length, fragments[id2].length));
+        byLength = new int[order.length];
+        sortedLengths = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            byLength[i] = order[i];
+            sortedLengths[i] = fragments[order[i]].length;
+        }
+    }
+
+    /**
+     * Returns the buckets of the q-grams of the codes with their counts as
+     * the pairs (bucket, count).
+     */
+    private int[] profile(int[] codes) {
+        int n = codes.length - q + 1;
+        if (n <= 0) {
+            return new int[0];
+        }
+        int[] buckets = new int[n];
+        for (int i = 0; i < n; i++) {
+            long h = 0xcbf29ce484222325L;
+            for (int j = i; j < i + q; j++) {
+                h = (h ^ codes[j]) * 0x100000001b3L;
+            }
+            buckets[i] = (int) (h ^ h >>> 32) & mask;
+        }
+        Arrays.sort(buckets);
+        int[] p = new int[2 * n];
+        int k = 0;
+        for (int i = 0; i < n; i++) {
+            if (k > 0 && p[k - 2] == buckets[i]) {
+                p[k - 1]++;
+            } else {
+                p[k++] = buckets[i];
+                p[k++] = 1;
+            }
+        }
+        return Arrays.copyOf(p, k);
+    }
+
+    public int size() {
+        return fragments.length;
+    }
+
+    public int[] getFragment(int id) {
+        return fragments[id];
+    }
+
+    /**
+     * Returns the lower bound of the distance of sequences of lengths m and n
+     * that share the given number of q-grams.
+     */
+    private int lowerBound(int m, int n, int shared) {
+        int byGrams = (Math.max(m, n) - q + 1 - shared + q - 1) / q;
+        return Math.max(Math.abs(m - n), byGrams);
+    }
+
+    /**
+     * Returns the k fragments nearest to the encoded query, the nearest
+     * first (the ties by the id). The method is thread-safe.
+     */
+    public List<Neighbor> query(int[] codes, int k) {
+        return query(codes, k, Integer.MAX_VALUE - 1);
+    }
+
+    /**
+     * Returns at most k fragments nearest to the encoded query whose distance
+     * is at most {@code maxDistance}. The limit is the initial k-th best
+     * distance, so that the far fragments are never verified.
+     */
+    public List<Neighbor> query(int[] codes, int k, int maxDistance) {
+        queries.increment();
+        if (k <= 0 || fragments.length == 0) {
+            return Collections.emptyList();
+        }
+        int m = codes.length;
+        int[] shared = new int[fragments.length];
+        int[] touched = new int[16];
+        int touchedCount = 0;
+        int[] p = profile(codes);
+        // the frequent q-grams are not counted (it would touch most of the
+        // fragments); each fragment is assumed to share all of them, so that
+        // the bounds stay valid
+        int skipped = 0;
+        int frequent = Math.max(64, fragments.length / 32);
+        for (int i = 0; i < p.length; i += 2) {
+            if (postingStart[p[i] + 1] - postingStart[p[i]] > frequent && skipped + p[i + 1] <= m / (2 * q)) {
+                skipped += p[i + 1];
+                p[i + 1] = 0;
+            }
+        }
+        for (int i = 0; i < p.length; i += 2) {
+            int count = p[i + 1];
+            if (count == 0) {
+                continue;
+            }
+            for (int j = postingStart[p[i]]; j < postingStart[p[i] + 1]; j++) {
+                int id = postingIds[j];
+                if (shared[id] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, 2 * touched.length);
+                    }
+                    touched[touchedCount++] = id;
+                }
+                shared[id] += Math.min(count, postingCounts[j]);
+            }
+        }
+        long[] candidates = new long[touchedCount];
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            candidates[i] = (long) lowerBound(m, fragments[id].length, shared[id] + skipped) << 32 | id;
+        }
+        Arrays.sort(candidates);
+        Search search = new Search(codes, k, maxDistance);
+        for (long c : candidates) {
+            if ((int) (c >>> 32) > search.threshold()) {
+                break;
+            }
+            search.verify((int) c);
+        }
+        // the fragments that share no q-gram, the nearest lengths first
+        int right = lowerIndex(m);
+        for (int i = right; i < byLength.length; i++) {
+            if (lowerBound(m, sortedLengths[i], skipped) > search.threshold()) {
+                break;
+            }
+            if (shared[byLength[i]] == 0) {
+                search.verify(byLength[i]);
+            }
+        }
+        for (int i = right - 1; i >= 0; i--) {
+            if (lowerBound(m, sortedLengths[i], skipped) > search.threshold()) {
+                break;
+            }
+            if (shared[byLength[i]] == 0) {
+                search.verify(byLength[i]);
+            }
+        }
+        return search.result();
+    }
+
+    /**
+     * Returns the index of the first fragment (by length) that is at least
+     * as long as the given length.
+     */
+    private int lowerIndex(int length) {
+        int lo = 0;
+        int hi = sortedLengths.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sortedLengths[mid] < length) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Reports the number of queries and the number of verified fragments per
+     * query.
+     */
+    public void report() {
+        long n = queries.sum();
+        System.err.printf("nearest: %d fragments, %d queries, %.1f fragments verified per query%n",
+                fragments.length, n, n == 0 ? 0.0 : (double) verified.sum() / n);
+    }
+
+    /**
+     * The k best fragments found so far.
+     */
+    private class Search {
+
+        private final int[] codes;
+        private final int k;
+        private final int maxDistance;
+        private final Myers myers;
+        private final PriorityQueue<Neighbor> best;
+
+        Search(int[] codes, int k, int maxDistance) {
+            this.codes = codes;
+            this.k = k;
+            this.maxDistance = maxDistance;
+            myers = new Myers(codes);
+            // the worst on the top
+            best = new PriorityQueue<>(k, (n1, n2) -> n1.distance != n2.distance
+                    ? Integer.compare(n2.distance, n1.distance) : Integer.compare(n2.id, n1.id));
+        }
+
+        /**
+         * Returns the distance that a fragment must not exceed to be among
+         * the k best.
+         */
+        int threshold() {
+            return best.size() < k ? maxDistance : best.peek().distance;
+        }
+
+        void verify(int id) {
+            verified.increment();
+            int[] f = fragments[id];
+            int limit = Math.min(threshold(), Math.max(codes.length, f.length));
+            int d = myers.distance(f, limit);
+            if (d > limit) {
+                return;
+            }
+            if (best.size() < k) {
+                best.add(new Neighbor(id, d));
+                return;
+            }
+            Neighbor worst = best.peek();
+            if (d < worst.distance || id < worst.id) {
+                best.poll();
+                best.add(new Neighbor(id, d));
+            }
+        }
+
+        List<Neighbor> result() {
+            List<Neighbor> result = new ArrayList<>(best);
+            result.sort((n1, n2) -> n1.distance != n2.distance
+                    ? Integer.compare(n1.distance, n2.distance) : Integer.compare(n1.id, n2.id));
+            return result;
+        }
+    }
+
+    /**
+     * A fragment and its distance from the query.
+     */
+    public static class Neighbor {
+
+        private final int id;
+        private final int distance;
+
+        public Neighbor(int id, int distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClones;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.StreamFilter;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The reader of NiCad XML files. The JAXB context is created only once and
+ * shared. The reader can also leave the code of the fragments in the file and
+ * read it only when it is needed (see {@link SourceBodies}).
+ *
+ * @author Zdenek Tronicek
+ */
+public class ReportReader {
+
+    private static volatile JAXBContext context;
+
+    private ReportReader() {
+    }
+
+    public static JAXBContext getContext() throws JAXBException {
+        JAXBContext ctx = context;
+        if (ctx == null) {
+            synchronized (ReportReader.class) {
+                ctx = context;
+                if (ctx == null) {
+                    ctx = JAXBContext.newInstance(NiCadClones.class);
+                    context = ctx;
+                }
+            }
+        }
+        return ctx;
+    }
+
+    /**
+     * Reads the file including the code of the fragments.
+     */
+    public static NiCadClones read(String fileName) throws JAXBException {
+        Unmarshaller unmarshaller = getContext().createUnmarshaller();
+        return (NiCadClones) unmarshaller.unmarshal(new File(fileName));
+    }
+
+    /**
+     * Reads the file without the code of the fragments. The text of the
+     * {@code source} elements is skipped by the XML reader and the positions
+     * of the code in the file are recorded in {@code bodies}. Returns null if
+     * the code cannot be located (and the file must be read by
+     * {@link #read(String)}).
+     */
+    public static NiCadClones readLazy(String fileName, SourceBodies bodies) throws Exception {
+        NiCadClones cls;
+        try (InputStream in = Files.newInputStream(Paths.get(fileName))) {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            XMLStreamReader reader = factory.createFilteredReader(factory.createXMLStreamReader(in), new SkipSourceText());
+            Unmarshaller unmarshaller = getContext().createUnmarshaller();
+            cls = (NiCadClones) unmarshaller.unmarshal(reader);
+            reader.close();
+        }
+        return bodies.locate(fileName, cls) ? cls : null;
+    }
+
+    /**
+     * The filter that drops the text of the {@code source} elements.
+     */
+    private static class SkipSourceText implements StreamFilter {
+
+        private boolean inSource;
+
+        @Override
+        public boolean accept(XMLStreamReader reader) {
+            switch (reader.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    inSource = reader.getLocalName().equals("source");
+                    return true;
+                case XMLStreamConstants.END_ELEMENT:
+                    inSource = false;
+                    return true;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    return !inSource;
+                default:
+                    return true;
+            }
+        }
+    }
+}
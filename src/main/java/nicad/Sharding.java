@@ -0,0 +1,102 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.util.Properties;
+
+/**
+ * The split of the clones into shards that are processed by separate
+ * processes. A clone belongs to the shard given by its index or by the hash of
+ * its fragments ({@code shardBy}). Each process writes the results of its shard
+ * to a file next to the output and the results are merged by the process with
+ * {@code shard = merge}. The processes communicate only through these files.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Sharding {
+
+    private final int shards;
+    private final int shard;
+    private final boolean merge;
+    private final boolean byHash;
+
+    public Sharding(Properties conf) {
+        shards = Integer.parseInt(conf.getProperty("shards", "1"));
+        if (shards < 1) {
+            throw new AssertionError("invalid shards: " + shards);
+        }
+        String s = conf.getProperty("shard", "0");
+        merge = s.equals("merge");
+        shard = merge ? -1 : Integer.parseInt(s);
+        if (!merge && (shard < 0 || shard >= shards)) {
+            throw new AssertionError("invalid shard: " + s);
+        }
+        if (merge && shards == 1) {
+            // a single shard is not written to a shard file
+            throw new AssertionError("invalid shard: merge requires shards > 1");
+        }
+        String by = conf.getProperty("shardBy", "index");
+        switch (by) {
+            case "index":
+                byHash = false;
+                break;
+            case "hash":
+                byHash = true;
+                break;
+            default:
+                throw new AssertionError("invalid shardBy: " + by);
+        }
+    }
+
+    /**
+     * Returns true if the clones are split into more shards.
+     */
+    public boolean isSharded() {
+        return shards > 1;
+    }
+
+    /**
+     * Returns true if this process merges the results of the shards.
+     */
+    public boolean isMerge() {
+        return merge;
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * Returns the shard of the clone.
+     */
+    public int shardOf(int index, NiCadClone clone) {
+        if (!byHash) {
+            return index % shards;
+        }
+        // String.hashCode is the same in all JVMs
+        StringBuilder sb = new StringBuilder();
+        for (NiCadSource src : clone.getSources()) {
+            sb.append(src.getFile()).append(':').append(src.getStartline()).append(':').append(src.getEndline()).append(';');
+        }
+        return Math.floorMod(sb.toString().hashCode(), shards);
+    }
+
+    /**
+     * Returns true if the clone belongs to the shard of this process.
+     */
+    public boolean contains(int index, NiCadClone clone) {
+        return merge || shardOf(index, clone) == shard;
+    }
+
+    /**
+     * Returns the file with the results of the shard. The file exists only
+     * when the shard is complete.
+     */
+    public String getShardFile(String output, int shard) {
+        return String.format("%s.shard-%d-of-%d", output, shard, shards);
+    }
+}
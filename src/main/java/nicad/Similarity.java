@@ -1,240 +1,233 @@
-package nicad;
-
-import com.github.javaparser.JavaToken;
-import parser.ParseException;
-import parser.Parser;
-import edu.tarleton.drdup2.nicad.NiCadClone;
-import edu.tarleton.drdup2.nicad.NiCadClones;
-import edu.tarleton.drdup2.nicad.NiCadSource;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Properties;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-import parser.Line;
-import parser.Lines;
-
-/**
- * This class computes the similarity in a NiCad XML file.
- *
- * @author Zdenek Tronicek
- */
-public class Similarity {
-
-    private final Properties conf;
-    private final boolean treatNullAsLiteral;
-    private final boolean treatSuperThisAsIdentifier;
-
-    public Similarity(Properties conf) {
-        this.conf = conf;
-        treatNullAsLiteral = Boolean.parseBoolean(conf.getProperty("treatNullAsLiteral", "false"));
-        treatSuperThisAsIdentifier = Boolean.parseBoolean(conf.getProperty("treatSuperThisAsIdentifier", "false"));
-    }
-
-    public void process() throws Exception {
-        Parser parser = Parser.instantiate(conf);
-        String input = conf.getProperty("inputFile");
-        NiCadClones cls = readFile(input);
-        for (NiCadClone clone : cls.getClones()) {
-            processClone(parser, clone);
-        }
-        int i = input.lastIndexOf(".xml");
-        String output = input.substring(0, i) + "-similarity.xml";
-        writeTextFile(cls, output);
-    }
-
-    private NiCadClones readFile(String fileName) throws Exception {
-        JAXBContext ctx = JAXBContext.newInstance(NiCadClones.class);
-        Unmarshaller unmarshaller = ctx.createUnmarshaller();
-        return (NiCadClones) unmarshaller.unmarshal(new File(fileName));
-    }
-
-    private void processClone(Parser parser, NiCadClone clone) {
-        try {
-            List<Lines> lines = new ArrayList<>();
-            for (NiCadSource src : clone.getSources()) {
-                Lines p = parser.parseToLines(src.getSourceCode(), true);
-                lines.add(p);
-            }
-            if (lines.size() > 2) {
-                throw new AssertionError("clone class found");
-            }
-            Lines lines1 = lines.get(0);
-            Lines lines2 = lines.get(1);
-            int s = similarity(lines1.getLines(), lines2.getLines());
-            clone.setSimilarity(s);
-            clone.setDistance(null);
-        } catch (ParseException e) {
-            clone.setSimilarity(0);
-            clone.setDistance(null);
-            System.err.println("parsing failed");
-        }
-    }
-
-    private int similarity(List<Line> lines1, List<Line> lines2) {
-        List<Line> m1 = removeBrace(lines1);
-        List<Line> m2 = removeBrace(lines2);
-        int lcs = LCS(m1, m2);
-        //double d = 2.0 * lcs / (m1.size() + m2.size());
-        double d = 1.0 * lcs / Math.max(m1.size(), m2.size());
-        return (int) Math.round(d * 100);
-    }
-
-    private List<Line> removeBrace(List<Line> lines) {
-        List<Line> p = new ArrayList<>();
-        for (Line line : lines) {
-            if (line.size() == 1) {
-                JavaToken t = line.getToken(0);
-                if (t.getKind() == JavaToken.Kind.RBRACE.getKind()) {
-                    continue;
-                }
-            }
-            p.add(line);
-        }
-        return p;
-    }
-
-    private int LCS(List<Line> lines1, List<Line> lines2) {
-        int m = lines1.size();
-        int[] d = new int[m + 1];
-        for (int i = 0; i < d.length; i++) {
-            d[i] = 0;
-        }
-        int[] nd = new int[d.length];
-        for (int i = 0; i < lines2.size(); i++) {
-            nd[0] = 0;
-            for (int j = 0; j < m; j++) {
-                Line line1 = lines1.get(j);
-                Line line2 = lines2.get(i);
-                boolean res = equal(line1.getTokens(), line2.getTokens());
-                if (res) {
-                    nd[j + 1] = d[j] + 1;
-                } else {
-                    nd[j + 1] = Math.max(d[j + 1], nd[j]);
-                }
-            }
-            int[] p = d;
-            d = nd;
-            nd = p;
-        }
-        return d[m];
-    }
-
-    private boolean equal(List<JavaToken> tt1, List<JavaToken> tt2) {
-        if (tt1.size() != tt2.size()) {
-            return false;
-        }
-        for (int i = 0; i < tt1.size(); i++) {
-            JavaToken t1 = tt1.get(i);
-            JavaToken t2 = tt2.get(i);
-            if (!equal(t1, t2)) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean equal(JavaToken tok1, JavaToken tok2) {
-        String s1 = tok1.getText();
-        String s2 = tok2.getText();
-        if (tok1.getKind() == tok2.getKind() && s1.equals(s2)) {
-            return true;
-        }
-        if (isIdentifier(tok1) && isIdentifier(tok2)) {
-            return true;
-        }
-        if (isLiteral(tok1) && isLiteral(tok2)) {
-            return true;
-        }
-        return false;
-    }
-
-    private boolean isIdentifier(JavaToken token) {
-        switch (token.getCategory()) {
-            case IDENTIFIER:
-                return true;
-            case KEYWORD:
-                String s = token.getText();
-                if (treatSuperThisAsIdentifier && isSuperThis(s)) {
-                    return true;
-                }
-                return isPrimitiveType(s);
-            default:
-                return false;
-        }
-    }
-
-    private boolean isSuperThis(String token) {
-        return token.equals("super") || token.equals("this");
-    }
-
-    private boolean isPrimitiveType(String token) {
-        switch (token) {
-            case "boolean":
-            case "byte":
-            case "char":
-            case "double":
-            case "float":
-            case "int":
-            case "long":
-            case "short":
-                return true;
-            default:
-                return false;
-        }
-    }
-
-    private boolean isLiteral(JavaToken token) {
-        switch (token.getCategory()) {
-            case LITERAL:
-                return true;
-            case KEYWORD:
-                String s = token.getText();
-                if (s.equals("null") && treatNullAsLiteral) {
-                    return true;
-                }
-                return s.equals("false") || s.equals("true");
-            default:
-                return false;
-        }
-    }
-
-    private void writeTextFile(NiCadClones clones, String fileName) throws Exception {
-        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8"))) {
-            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
-            out.println("<clones>");
-            for (NiCadClone clone : clones.getClones()) {
-                out.printf("    <clone nlines=\"%d\" similarity=\"%d\">%n", clone.getNlines(), clone.getSimilarity());
-                for (NiCadSource src : clone.getSources()) {
-                    out.printf("        <source file=\"%s\" startline=\"%d\" endline=\"%d\">", src.getFile(), src.getStartline(), src.getEndline());
-                    String code = src.getSourceCode()
-                            .replace("&", "&amp;")
-                            .replace("<", "&lt;")
-                            .replace(">", "&gt;");
-                    out.print(code);
-                    out.println("</source>");
-                }
-                out.println("    </clone>");
-            }
-            out.println("</clones>");
-        }
-    }
-
-    public static void main(String[] args) throws Exception {
-        if (args.length != 1) {
-            System.err.println("expected argument: properties file (e.g. JavaAPI.properties)");
-            System.exit(0);
-        }
-        Properties conf = new Properties();
-        try (FileReader in = new FileReader(args[0])) {
-            conf.load(in);
-        }
-        Similarity sim = new Similarity(conf);
-        sim.process();
-    }
-}
+package nicad;
+
+import com.github.javaparser.JavaToken;
+import engine.Edit;
+import engine.Hirschberg;
+import parser.Equivalence;
+import parser.Parser;
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import parser.Line;
+import parser.Lines;
+
+/**
+ * This class computes the similarity in a NiCad XML file.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Similarity extends CloneProcessor {
+
+    private final Equivalence equivalence;
+
+    public Similarity(Properties conf) {
+        super(conf);
+        equivalence = new Equivalence(conf);
+    }
+
+    @Override
+    protected String getOutputSuffix() {
+        return "-similarity.xml";
+    }
+
+    @Override
+    protected String formatResult(NiCadClone clone) {
+        return String.format("similarity=\"%d\"", clone.getSimilarity());
+    }
+
+    @Override
+    protected void processClone(Parser parser, NiCadClone clone) {
+        Sweep sweep = getSweep();
+        if (sweep != null) {
+            sweep(parser, clone, sweep);
+            return;
+        }
+        Sketching sketching = getSketching();
+        List<NiCadSource> sources = clone.getSources();
+        if (sketching != null) {
+            Sketch s1 = sketching.getKnown(sources.get(0));
+            Sketch s2 = sketching.getKnown(sources.get(1));
+            if (s1 != null && s2 != null) {
+                estimate(clone, s1, s2);
+                return;
+            }
+        }
+        List<Lines> lines = new ArrayList<>();
+        for (NiCadSource src : sources) {
+            Lines p = parser.parseToLines(getSourceCode(src), true);
+            lines.add(p);
+        }
+        List<Line> m1 = removeBrace(lines.get(0).getLines());
+        List<Line> m2 = removeBrace(lines.get(1).getLines());
+        int[][] ee1 = equivalence.encodeLines(m1);
+        int[][] ee2 = equivalence.encodeLines(m2);
+        boolean positioned = lines.get(0).isPositioned() && lines.get(1).isPositioned();
+        if (sketching == null) {
+            score(clone, m1, m2, ee1, ee2, positioned, true);
+            return;
+        }
+        Sketch s1 = sketching.sketch(sources.get(0), ee1);
+        Sketch s2 = sketching.sketch(sources.get(1), ee2);
+        if (sketching.isEstimated(s1, s2)) {
+            estimate(clone, s1, s2);
+            return;
+        }
+        int s = score(clone, m1, m2, ee1, ee2, positioned, true);
+        sketching.recordExact(Sketching.estimateSimilarity(s1, s2), s);
+    }
+
+    private void estimate(NiCadClone clone, Sketch s1, Sketch s2) {
+        clone.setSimilarity(Sketching.estimateSimilarity(s1, s2));
+        clone.setDistance(null);
+        setEstimated(clone);
+    }
+
+    /**
+     * Computes the similarity of the variants of the fragments, which are
+     * parsed only once.
+     */
+    private void sweep(Parser parser, NiCadClone clone, Sweep sweep) {
+        List<List<Lines>> variants = new ArrayList<>();
+        for (NiCadSource src : clone.getSources()) {
+            variants.add(parser.parseToLinesVariants(getSourceCode(src), sweep.getVariants()));
+        }
+        String[] results = new String[sweep.getVariants().size()];
+        for (int v = 0; v < results.length; v++) {
+            Lines l1 = variants.get(0).get(v);
+            Lines l2 = variants.get(1).get(v);
+            List<Line> m1 = removeBrace(l1.getLines());
+            List<Line> m2 = removeBrace(l2.getLines());
+            Equivalence eq = sweep.getEquivalence(v);
+            boolean positioned = l1.isPositioned() && l2.isPositioned();
+            int s = score(clone, m1, m2, eq.encodeLines(m1), eq.encodeLines(m2), positioned, v == sweep.getBase());
+            results[v] = String.format("similarity=\"%d\"", s);
+        }
+        sweep.setResults(clone, results);
+    }
+
+    /**
+     * Computes the similarity of the lines. If {@code set} is true, the
+     * similarity (and the alignment) is set to the clone. The alignment has
+     * the line numbers if the lines are positioned (see
+     * {@link Lines#isPositioned()}).
+     */
+    private int score(NiCadClone clone, List<Line> m1, List<Line> m2, int[][] ee1, int[][] ee2, boolean positioned, boolean set) {
+        Map<LineKey, Integer> ids = new HashMap<>();
+        int[] ll1 = identify(ee1, ids);
+        int[] ll2 = identify(ee2, ids);
+        int s;
+        Dedup dedup = getDedup();
+        if (dedup == null) {
+            s = similarity(ll1, ll2);
+        } else {
+            boolean equal = ee1.length > 0 && Arrays.deepEquals(ee1, ee2);
+            s = dedup.apply(Dedup.fingerprint(ee1), Dedup.fingerprint(ee2), equal, 100, () -> similarity(ll1, ll2));
+        }
+        if (!set) {
+            return s;
+        }
+        clone.setSimilarity(s);
+        clone.setDistance(null);
+        if (alignThreshold >= 0 && s >= alignThreshold) {
+            List<Edit> edits = Hirschberg.lcsAlignment(ll1, ll2);
+            int offset1 = getLineOffset(clone.getSources().get(0));
+            int offset2 = getLineOffset(clone.getSources().get(1));
+            setAlignment(clone, Alignment.ofLines(edits, m1, m2, positioned, offset1, offset2));
+        }
+        return s;
+    }
+
+    @Override
+    protected void setFailed(NiCadClone clone) {
+        clone.setSimilarity(0);
+        clone.setDistance(null);
+    }
+
+    private int similarity(int[] ll1, int[] ll2) {
+        int lcs = getEngine().lcsLength(ll1, ll2);
+        //double d = 2.0 * lcs / (ll1.length + ll2.length);
+        double d = 1.0 * lcs / Math.max(ll1.length, ll2.length);
+        return (int) Math.round(d * 100);
+    }
+
+    /**
+     * Removes the lines with only the closing brace. The list is modified in
+     * place.
+     */
+    private List<Line> removeBrace(List<Line> lines) {
+        int k = 0;
+        for (Line line : lines) {
+            if (line.size() == 1) {
+                JavaToken t = line.getToken(0);
+                if (t.getKind() == JavaToken.Kind.RBRACE.getKind()) {
+                    continue;
+                }
+            }
+            lines.set(k++, line);
+        }
+        lines.subList(k, lines.size()).clear();
+        return lines;
+    }
+
+    /**
+     * Assigns an integer to each line so that equal lines get the same
+     * integer.
+     */
+    private int[] identify(int[][] lines, Map<LineKey, Integer> ids) {
+        int[] p = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            LineKey key = new LineKey(lines[i]);
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = ids.size();
+                ids.put(key, id);
+            }
+            p[i] = id;
+        }
+        return p;
+    }
+
+    private static class LineKey {
+
+        private final int[] codes;
+        private final int hash;
+
+        LineKey(int[] codes) {
+            this.codes = codes;
+            hash = Arrays.hashCode(codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof LineKey)) {
+                return false;
+            }
+            LineKey that = (LineKey) obj;
+            return hash == that.hash && Arrays.equals(codes, that.codes);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("expected argument: properties file (e.g. JavaAPI.properties)");
+            System.exit(0);
+        }
+        Properties conf = new Properties();
+        try (FileReader in = new FileReader(args[0])) {
+            conf.load(in);
+        }
+        Similarity sim = new Similarity(conf);
+        sim.process();
+    }
+}
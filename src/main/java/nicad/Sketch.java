@@ -0,0 +1,93 @@
+package nicad;
+
+/**
+ * The sketch of a fragment: the SimHash of its q-grams (of the encoded tokens
+ * or lines) and its length. Two sketches are compared in constant time: the
+ * number of different bits estimates the angle between the q-gram profiles.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Sketch {
+
+    private final long bits;
+    private final int length;
+
+    public Sketch(long bits, int length) {
+        this.bits = bits;
+        this.length = length;
+    }
+
+    /**
+     * Returns the sketch of the encoded tokens.
+     */
+    public static Sketch of(int[] codes, int q) {
+        int[] weights = new int[64];
+        int n = Math.max(1, codes.length - q + 1);
+        for (int i = 0; i < n; i++) {
+            long h = 0xcbf29ce484222325L;
+            for (int j = i; j < Math.min(i + q, codes.length); j++) {
+                h = (h ^ codes[j]) * 0x100000001b3L;
+            }
+            add(weights, mix(h));
+        }
+        return new Sketch(pack(weights), codes.length);
+    }
+
+    /**
+     * Returns the sketch of the encoded lines. The lines are taken one by one
+     * (a line is already a sequence of tokens).
+     */
+    public static Sketch of(int[][] lines) {
+        int[] weights = new int[64];
+        for (int[] line : lines) {
+            add(weights, Dedup.fingerprint(line));
+        }
+        return new Sketch(pack(weights), lines.length);
+    }
+
+    private static void add(int[] weights, long h) {
+        for (int b = 0; b < 64; b++) {
+            weights[b] += (h >>> b & 1) != 0 ? 1 : -1;
+        }
+    }
+
+    private static long pack(int[] weights) {
+        long bits = 0;
+        for (int b = 0; b < 64; b++) {
+            if (weights[b] > 0) {
+                bits |= 1L << b;
+            }
+        }
+        return bits;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    public long getBits() {
+        return bits;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Returns the estimated similarity (in [0, 1]), i.e. the cosine of the
+     * q-gram profiles scaled by the square root of the ratio of the lengths,
+     * so that a fragment that contains the other gets the ratio of the
+     * lengths.
+     */
+    public double similarity(Sketch that) {
+        int max = Math.max(length, that.length);
+        if (max == 0) {
+            return 1;
+        }
+        int hamming = Long.bitCount(bits ^ that.bits);
+        double cos = Math.max(0, Math.cos(Math.PI * hamming / 64));
+        return cos * Math.sqrt((double) Math.min(length, that.length) / max);
+    }
+}
@@ -0,0 +1,188 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The use of the sketches (see {@link Sketch}) given by {@code sketch}:
+ * <ul>
+ * <li>{@code estimate} - the result of each clone is estimated from the
+ * sketches; the sketches are kept by the fragment, so that a fragment is
+ * parsed only once</li>
+ * <li>{@code filter} - the clones whose estimated similarity is below
+ * {@code sketchThreshold} (in percent) get the estimate, the other clones are
+ * scored exactly</li>
+ * <li>{@code compare} - all clones are scored exactly and compared with the
+ * estimate</li>
+ * </ul>
+ * The estimated results are marked in the output. The distribution of the
+ * error of the estimates (against the exact results) is reported.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Sketching {
+
+    private final String mode;
+    private final int q;
+    private final double threshold;
+    private final Map<String, Sketch> sketches = new ConcurrentHashMap<>();
+    private final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder estimated = new LongAdder();
+    private final LongAdder exact = new LongAdder();
+
+    private Sketching(Properties conf, String mode) {
+        switch (mode) {
+            case "estimate":
+            case "filter":
+            case "compare":
+                break;
+            default:
+                throw new AssertionError("invalid sketch: " + mode);
+        }
+        this.mode = mode;
+        q = Integer.parseInt(conf.getProperty("sketchQ", "3"));
+        if (q < 1) {
+            throw new AssertionError("invalid sketchQ: " + q);
+        }
+        threshold = Integer.parseInt(conf.getProperty("sketchThreshold", "50")) / 100.0;
+    }
+
+    /**
+     * Returns the sketching given by the configuration, or null if there is
+     * none.
+     */
+    public static Sketching of(Properties conf) {
+        String mode = conf.getProperty("sketch", "none");
+        return mode.equals("none") ? null : new Sketching(conf, mode);
+    }
+
+    private static String keyOf(NiCadSource src) {
+        return src.getFile() + ":" + src.getStartline() + ":" + src.getEndline();
+    }
+
+    /**
+     * Returns the sketch of the fragment if it is known and the results are
+     * estimated only, or null.
+     */
+    public Sketch getKnown(NiCadSource src) {
+        return mode.equals("estimate") ? sketches.get(keyOf(src)) : null;
+    }
+
+    /**
+     * Returns the sketch of the encoded tokens of the fragment.
+     */
+    public Sketch sketch(NiCadSource src, int[] codes) {
+        Sketch s = Sketch.of(codes, q);
+        remember(src, s);
+        return s;
+    }
+
+    /**
+     * Returns the sketch of the encoded lines of the fragment.
+     */
+    public Sketch sketch(NiCadSource src, int[][] lines) {
+        Sketch s = Sketch.of(lines);
+        remember(src, s);
+        return s;
+    }
+
+    private void remember(NiCadSource src, Sketch s) {
+        if (mode.equals("estimate")) {
+            sketches.put(keyOf(src), s);
+        }
+    }
+
+    /**
+     * Returns true if the result of the pair is only estimated.
+     */
+    public boolean isEstimated(Sketch s1, Sketch s2) {
+        switch (mode) {
+            case "estimate":
+                return true;
+            case "filter":
+                return s1.similarity(s2) < threshold;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns the estimated token edit distance.
+     */
+    public static int estimateDistance(Sketch s1, Sketch s2) {
+        int max = Math.max(s1.getLength(), s2.getLength());
+        return (int) Math.round(max * (1 - s1.similarity(s2)));
+    }
+
+    /**
+     * Returns the estimated line similarity (in percent).
+     */
+    public static int estimateSimilarity(Sketch s1, Sketch s2) {
+        return (int) Math.round(100 * s1.similarity(s2));
+    }
+
+    public void recordEstimated() {
+        estimated.increment();
+    }
+
+    /**
+     * Records the error of the estimate.
+     */
+    public void recordExact(int estimate, int result) {
+        exact.increment();
+        errors.computeIfAbsent(estimate - result, e -> new LongAdder()).increment();
+    }
+
+    /**
+     * Reports the numbers of the estimated and exact results and the
+     * distribution of the error (see {@link #getErrorSummary()}).
+     */
+    public void report() {
+        System.err.printf("sketch: %d estimated, %d exact%n", estimated.sum(), exact.sum());
+        String summary = getErrorSummary();
+        if (summary != null) {
+            System.err.printf("sketch error: %s%n", summary);
+        }
+    }
+
+    /**
+     * Returns the distribution of the error (the estimate minus the exact
+     * result): the mean, the mean absolute error and the percentiles of the
+     * absolute error, or null if no exact result was recorded.
+     */
+    public String getErrorSummary() {
+        if (errors.isEmpty()) {
+            return null;
+        }
+        TreeMap<Integer, Long> abs = new TreeMap<>();
+        long n = 0;
+        long sum = 0;
+        long bias = 0;
+        for (Map.Entry<Integer, LongAdder> e : errors.entrySet()) {
+            long c = e.getValue().sum();
+            abs.merge(Math.abs(e.getKey()), c, Long::sum);
+            n += c;
+            sum += Math.abs(e.getKey()) * c;
+            bias += e.getKey() * c;
+        }
+        return String.format("mean %.2f, mean |error| %.2f, p50 %d, p90 %d, p99 %d, max %d",
+                (double) bias / n, (double) sum / n, percentile(abs, n, 0.5),
+                percentile(abs, n, 0.9), percentile(abs, n, 0.99), abs.lastKey());
+    }
+
+    private static int percentile(TreeMap<Integer, Long> counts, long n, double p) {
+        long rank = (long) Math.ceil(p * n);
+        long seen = 0;
+        for (Map.Entry<Integer, Long> e : counts.entrySet()) {
+            seen += e.getValue();
+            if (seen >= rank) {
+                return e.getKey();
+            }
+        }
+        return counts.lastKey();
+    }
+}
@@ -0,0 +1,225 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadClones;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The code of the fragments that is left in the NiCad XML file. The file is
+ * mapped to memory and only the positions of the code of each fragment are
+ * kept. The code is decoded when it is needed, so that the code of all
+ * fragments is not in memory at once.
+ *
+ * @author Zdenek Tronicek
+ */
+public class SourceBodies {
+
+    private static final byte[] OPEN = "<source".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLOSE = "</source".getBytes(StandardCharsets.US_ASCII);
+    private static final Pattern ENCODING = Pattern.compile("encoding\\s*=\\s*[\"']([^\"']+)[\"']");
+
+    private final Map<NiCadSource, int[]> positions = new IdentityHashMap<>();
+    private ByteBuffer buffer;
+    private Charset charset;
+
+    /**
+     * Finds the code of the fragments in the file. The fragments are in the
+     * same order in the file and in {@code cls}. Returns false if the code
+     * cannot be located, e.g. if the file is larger than 2 GB or its encoding
+     * is not compatible with ASCII.
+     */
+    boolean locate(String fileName, NiCadClones cls) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) {
+                return false;
+            }
+            buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        charset = findCharset(buf);
+        if (charset == null) {
+            return false;
+        }
+        List<int[]> found = scan(buf);
+        List<NiCadSource> sources = new ArrayList<>();
+        for (NiCadClone clone : cls.getClones()) {
+            sources.addAll(clone.getSources());
+        }
+        if (found == null || found.size() != sources.size()) {
+            return false;
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            positions.put(sources.get(i), found.get(i));
+        }
+        buffer = buf;
+        return true;
+    }
+
+    private static Charset findCharset(ByteBuffer buf) {
+        byte[] head = new byte[Math.min(buf.limit(), 256)];
+        buf.duplicate().get(head);
+        String decl = new String(head, StandardCharsets.ISO_8859_1);
+        int end = decl.indexOf("?>");
+        Charset cs = StandardCharsets.UTF_8;
+        if (decl.startsWith("<?xml") && end > 0) {
+            Matcher m = ENCODING.matcher(decl.substring(0, end));
+            if (m.find()) {
+                try {
+                    cs = Charset.forName(m.group(1));
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+            }
+        }
+        // the markup is searched for as ASCII bytes
+        return new String(OPEN, cs).equals("<source") ? cs : null;
+    }
+
+    /**
+     * Returns the positions of the code of the {@code source} elements in the
+     * file. An empty element has the position {@code {-1, -1}}.
+     */
+    private static List<int[]> scan(ByteBuffer buf) {
+        List<int[]> found = new ArrayList<>();
+        int n = buf.limit();
+        int i = 0;
+        while ((i = indexOf(buf, OPEN, i)) >= 0) {
+            int j = i + OPEN.length;
+            if (j >= n || !isDelimiter(buf.get(j))) {
+                i = j;
+                continue;
+            }
+            // the end of the start tag
+            byte quote = 0;
+            for (; j < n; j++) {
+                byte b = buf.get(j);
+                if (quote != 0) {
+                    if (b == quote) {
+                        quote = 0;
+                    }
+                } else if (b == '"' || b == '\'') {
+                    quote = b;
+                } else if (b == '>') {
+                    break;
+                }
+            }
+            if (j >= n) {
+                return null;
+            }
+            if (buf.get(j - 1) == '/') {
+                found.add(new int[]{-1, -1});
+                i = j + 1;
+                continue;
+            }
+            int end = indexOf(buf, CLOSE, j + 1);
+            if (end < 0) {
+                return null;
+            }
+            found.add(new int[]{j + 1, end});
+            i = end + CLOSE.length;
+        }
+        return found;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == '>' || b == '/' || b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static int indexOf(ByteBuffer buf, byte[] s, int from) {
+        int last = buf.limit() - s.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int k = 0; k < s.length; k++) {
+                if (buf.get(i + k) != s[k]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the code of the fragment as the XML parser would, i.e. with the
+     * references replaced and the line ends normalized.
+     */
+    public String getCode(NiCadSource src) {
+        int[] pos = positions.get(src);
+        if (pos == null || pos[0] < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[pos[1] - pos[0]];
+        ByteBuffer b = buffer.duplicate();
+        b.position(pos[0]);
+        b.get(bytes);
+        return unescape(new String(bytes, charset));
+    }
+
+    static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '\r') {
+                sb.append('\n');
+                if (i + 1 < n && s.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            } else if (c == '&') {
+                int end = s.indexOf(';', i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("invalid reference: " + s.substring(i));
+                }
+                sb.append(resolve(s.substring(i + 1, end)));
+                i = end;
+            } else if (c == '<' && s.startsWith("<![CDATA[", i)) {
+                int end = s.indexOf("]]>", i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("unterminated CDATA section");
+                }
+                sb.append(s.substring(i + 9, end).replace("\r\n", "\n").replace('\r', '\n'));
+                i = end + 2;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String resolve(String ref) {
+        switch (ref) {
+            case "lt":
+                return "<";
+            case "gt":
+                return ">";
+            case "amp":
+                return "&";
+            case "quot":
+                return "\"";
+            case "apos":
+                return "'";
+            default:
+                if (ref.startsWith("#x")) {
+                    return new String(Character.toChars(Integer.parseInt(ref.substring(2), 16)));
+                }
+                if (ref.startsWith("#")) {
+                    return new String(Character.toChars(Integer.parseInt(ref.substring(1))));
+                }
+                throw new IllegalArgumentException("invalid reference: &" + ref + ";");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The original source files that the fragments are read from. Each file is
+ * mapped into memory and indexed by lines only once, and then shared by all
+ * clones that refer to it.
+ *
+ * @author Zdenek Tronicek
+ */
+public class SourceFiles {
+
+    private final Path root;
+    private final Charset charset;
+    private final ConcurrentHashMap<String, SourceFile> files = new ConcurrentHashMap<>();
+
+    public SourceFiles(Properties conf) {
+        root = Paths.get(conf.getProperty("sourceRoot", "."));
+        charset = Charset.forName(conf.getProperty("sourceEncoding", "UTF-8"));
+    }
+
+    /**
+     * Returns the source files given by the configuration if
+     * {@code source = files}, or null if the code is embedded in the XML file
+     * ({@code source = embedded}).
+     */
+    public static SourceFiles of(Properties conf) {
+        String source = conf.getProperty("source", "embedded");
+        switch (source) {
+            case "embedded":
+                return null;
+            case "files":
+                return new SourceFiles(conf);
+            default:
+                throw new AssertionError("invalid source: " + source);
+        }
+    }
+
+    /**
+     * Returns the source code of the fragment: read from the source files, or
+     * embedded in the XML file if {@code files} is null (from the bodies, if
+     * they are not null; see {@link SourceBodies}).
+     */
+    public static String getCode(SourceFiles files, SourceBodies bodies, NiCadSource src) {
+        if (files == null) {
+            return bodies != null ? bodies.getCode(src) : src.getSourceCode();
+        }
+        return files.getCode(src.getFile(), src.getStartline(), src.getEndline());
+    }
+
+    public String getCode(String file, int startline, int endline) {
+        SourceFile sf = files.computeIfAbsent(file, this::open);
+        return sf.getLines(startline, endline, charset);
+    }
+
+    private SourceFile open(String file) {
+        Path path = root.resolve(file);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            return new SourceFile(buf);
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot read " + path, e);
+        }
+    }
+
+    static class SourceFile {
+
+        private final MappedByteBuffer buffer;
+        private final int[] lineStarts;
+
+        SourceFile(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            lineStarts = indexLines(buffer);
+        }
+
+        private static int[] indexLines(ByteBuffer buf) {
+            int[] starts = new int[256];
+            int n = 0;
+            starts[n++] = 0;
+            int size = buf.limit();
+            for (int i = 0; i < size; i++) {
+                if (buf.get(i) == '\n') {
+                    if (n == starts.length) {
+                        starts = Arrays.copyOf(starts, n * 2);
+                    }
+                    starts[n++] = i + 1;
+                }
+            }
+            if (starts[n - 1] != size) {
+                if (n == starts.length) {
+                    starts = Arrays.copyOf(starts, n + 1);
+                }
+                starts[n++] = size;
+            }
+            return Arrays.copyOf(starts, n);
+        }
+
+        int lineCount() {
+            return lineStarts.length - 1;
+        }
+
+        String getLines(int startline, int endline, Charset charset) {
+            int first = Math.max(startline, 1) - 1;
+            int last = Math.min(endline, lineCount());
+            if (first >= last) {
+                return "";
+            }
+            ByteBuffer dup = buffer.duplicate();
+            dup.limit(lineStarts[last]);
+            dup.position(lineStarts[first]);
+            return charset.decode(dup).toString();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import parser.Equivalence;
+
+/**
+ * The sweep over the normalization variants. The variants are all
+ * combinations of the values of the options in {@code sweep} (the other
+ * options are taken from the configuration). Each fragment is parsed once
+ * and the tokens or lines of each variant are derived from the same parse
+ * (see {@link parser.Parser#parseVariants}). The result of the variant that
+ * is given by the configuration is the result of the clone; the results of
+ * all variants are written to the output as {@code variant} elements.
+ *
+ * @author Zdenek Tronicek
+ */
+public class Sweep {
+
+    private static final List<String> OPTIONS = Arrays.asList("addBlocks", "ignoreAnnotations",
+            "ignoreParentheses", "ignoreUnaryAtLiterals", "treatNullAsLiteral", "treatSuperThisAsIdentifier");
+
+    private final List<String> options = new ArrayList<>();
+    private final List<Properties> variants = new ArrayList<>();
+    private final List<Equivalence> equivalences = new ArrayList<>();
+    private final Map<NiCadClone, String[]> results = new ConcurrentHashMap<>();
+    private final int base;
+
+    private Sweep(Properties conf, String sweep) {
+        for (String opt : sweep.split(",")) {
+            opt = opt.trim();
+            if (!OPTIONS.contains(opt) || options.contains(opt)) {
+                throw new AssertionError("invalid sweep: " + opt);
+            }
+            options.add(opt);
+        }
+        int b = -1;
+        for (int v = 0; v < 1 << options.size(); v++) {
+            Properties p = new Properties();
+            p.putAll(conf);
+            boolean same = true;
+            for (int i = 0; i < options.size(); i++) {
+                String opt = options.get(i);
+                boolean value = (v & (1 << i)) != 0;
+                same &= value == Boolean.parseBoolean(conf.getProperty(opt, "false"));
+                p.setProperty(opt, String.valueOf(value));
+            }
+            if (same) {
+                b = v;
+            }
+            variants.add(p);
+            equivalences.add(new Equivalence(p));
+        }
+        base = b;
+    }
+
+    /**
+     * Returns the sweep given by the configuration, or null if there is none.
+     */
+    public static Sweep of(Properties conf) {
+        String sweep = conf.getProperty("sweep");
+        return sweep == null || sweep.trim().isEmpty() ? null : new Sweep(conf, sweep);
+    }
+
+    /**
+     * Returns the configurations of the variants.
+     */
+    public List<Properties> getVariants() {
+        return variants;
+    }
+
+    public Equivalence getEquivalence(int variant) {
+        return equivalences.get(variant);
+    }
+
+    /**
+     * Returns the variant that is given by the configuration.
+     */
+    public int getBase() {
+        return base;
+    }
+
+    /**
+     * Sets the results of the variants, e.g. {@code distance="3"}.
+     */
+    public void setResults(NiCadClone clone, String[] formatted) {
+        results.put(clone, formatted);
+    }
+
+    /**
+     * Returns the results of the variants, or {@code null} if the clone has
+     * no results.
+     */
+    public String[] getResults(NiCadClone clone) {
+        return results.get(clone);
+    }
+
+    void write(PrintWriter out, NiCadClone clone) {
+        String[] formatted = results.get(clone);
+        if (formatted == null) {
+            return;
+        }
+        for (int v = 0; v < formatted.length; v++) {
+            out.print("        <variant");
+            Properties p = variants.get(v);
+            for (String opt : options) {
+                out.printf(" %s=\"%s\"", opt, p.getProperty(opt));
+            }
+            out.printf(" %s/>%n", formatted[v]);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import engine.ZhangShasha;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import parser.Equivalence;
+import parser.Parser;
+import parser.Tree;
+
+/**
+ * This class computes the tree edit distance in a NiCad XML file. The
+ * distance is computed over the normalized ASTs by the Zhang-Shasha algorithm.
+ * The pairs whose lower bound (given by the sizes and labels of the trees) is
+ * greater than {@code maxTreeDistance} are not compared and their distance is
+ * {@code Integer.MAX_VALUE}.
+ *
+ * @author Zdenek Tronicek
+ */
+public class TreeDistance extends CloneProcessor {
+
+    private final Equivalence equivalence;
+    private final int maxTreeDistance;
+    private final int cacheSize;
+    private final Map<PairKey, Integer> cache = new ConcurrentHashMap<>();
+
+    public TreeDistance(Properties conf) {
+        super(conf);
+        equivalence = new Equivalence(conf);
+        maxTreeDistance = Integer.parseInt(conf.getProperty("maxTreeDistance", String.valueOf(Integer.MAX_VALUE)));
+        cacheSize = Integer.parseInt(conf.getProperty("treeCacheSize", "100000"));
+        if (getSweep() != null) {
+            throw new AssertionError("invalid sweep: the trees are normalized in place");
+        }
+        if (getSketching() != null) {
+            throw new AssertionError("invalid sketch: no sketches of trees");
+        }
+        String language = conf.getProperty("language", "java");
+        if (!language.equals("java")) {
+            throw new AssertionError("invalid language: " + language + " (the trees are of Java only)");
+        }
+    }
+
+    @Override
+    protected String getOutputSuffix() {
+        return "-treedistance.xml";
+    }
+
+    @Override
+    protected String formatResult(NiCadClone clone) {
+        return String.format("treedistance=\"%d\"", clone.getDistance());
+    }
+
+    @Override
+    protected void processClone(Parser parser, NiCadClone clone) {
+        List<Tree> trees = new ArrayList<>();
+        for (NiCadSource src : clone.getSources()) {
+            Tree t = parser.parseToTree(getSourceCode(src), true, equivalence);
+            trees.add(t);
+        }
+        Tree t1 = trees.get(0);
+        Tree t2 = trees.get(1);
+        int d = treeDistance(t1, t2);
+        clone.setDistance(d);
+        clone.setSimilarity(null);
+    }
+
+    @Override
+    protected void setFailed(NiCadClone clone) {
+        clone.setDistance(Integer.MAX_VALUE);
+        clone.setSimilarity(null);
+    }
+
+    private int treeDistance(Tree t1, Tree t2) {
+        if (t1.getKey() == t2.getKey()
+                && Arrays.equals(t1.getLabels(), t2.getLabels())
+                && Arrays.equals(t1.getLeftmost(), t2.getLeftmost())) {
+            return 0;
+        }
+        PairKey key = new PairKey(t1.getKey(), t2.getKey());
+        Integer cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (ZhangShasha.lowerBound(t1.getLabels(), t2.getLabels()) > maxTreeDistance) {
+            return Integer.MAX_VALUE;
+        }
+        int d = ZhangShasha.distance(t1.getLabels(), t1.getLeftmost(), t1.getKeyroots(),
+                t2.getLabels(), t2.getLeftmost(), t2.getKeyroots());
+        if (cache.size() < cacheSize) {
+            cache.put(key, d);
+        }
+        return d;
+    }
+
+    /**
+     * The key of a pair of trees.
+     */
+    private static class PairKey {
+
+        private final long key1;
+        private final long key2;
+
+        PairKey(long key1, long key2) {
+            this.key1 = key1;
+            this.key2 = key2;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(key1 * 31 + key2);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof PairKey)) {
+                return false;
+            }
+            PairKey that = (PairKey) obj;
+            return key1 == that.key1 && key2 == that.key2;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("expected argument: properties file (e.g. JavaAPI.properties)");
+            System.exit(0);
+        }
+        Properties conf = new Properties();
+        try (FileReader in = new FileReader(args[0])) {
+            conf.load(in);
+        }
+        TreeDistance td = new TreeDistance(conf);
+        td.process();
+    }
+}
@@ -0,0 +1,24 @@
+package nicad;
+
+/**
+ * The escaping of the text that is written to the XML output.
+ *
+ * @author Zdenek Tronicek
+ */
+class Xml {
+
+    private Xml() {
+    }
+
+    /**
+     * Returns the text escaped for an attribute value (in double quotes).
+     */
+    static String escape(String s) {
+        return s.replace("&", "&amp;")
+                .replace("<", "&lt;")
+                .replace(">", "&gt;")
+                .replace("\"", "&quot;")
+                .replace("\n", "&#10;")
+                .replace("\r", "&#13;");
+    }
+}
@@ -0,0 +1,247 @@
+package parser;
+
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.TokenTypes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The token equivalence policy. The policy is compiled into a table that maps
+ * the token kind to the equivalence class, so that the classification of a
+ * token is a single array lookup. The tokens are then encoded as integers and
+ * two tokens are equal iff their codes are equal.
+ *
+ * <p>
+ * If the identifiers are renamed consistently, the fragment is encoded as a
+ * parameterized string: the first occurrence of an identifier is encoded as -1
+ * and every other occurrence by how many identifiers back its previous
+ * occurrence is (-1 - distance). For example, {@code a = b + a} and
+ * {@code x = y + x} are then encoded equally, whereas {@code a = b + c} is
+ * not. An inconsistent renaming changes only a few codes.
+ *
+ * <p>
+ * The policy is given by the following properties:
+ * <ul>
+ * <li>{@code rename} - {@code blind} (all identifiers are equal),
+ * {@code consistent} (identifiers are equal iff they are renamed consistently
+ * within the fragment) or {@code none} (identifiers are equal iff they have
+ * the same name)</li>
+ * <li>{@code literals} - {@code blind} (all literals are equal),
+ * {@code typed} (literals are equal iff they have the same type) or
+ * {@code none} (literals are equal iff they have the same text)</li>
+ * <li>{@code treatNullAsLiteral}</li>
+ * <li>{@code treatSuperThisAsIdentifier}</li>
+ * </ul>
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class Equivalence {
+
+    /**
+     * The options that the equivalence reads.
+     */
+    public static final List<String> OPTIONS = Arrays.asList("rename", "literals", "treatNullAsLiteral",
+            "treatSuperThisAsIdentifier");
+
+    public static final int IDENTIFIER = 0;
+    public static final int LITERAL = 1;
+    private static final int FIRST_KIND = 2;
+    private static final int TEXT = -1;
+    private static final int PARAMETER = -2;
+
+    private final boolean consistent;
+    private final int[] table;
+    private final ConcurrentHashMap<String, Integer> texts = new ConcurrentHashMap<>();
+    private final AtomicInteger nextText;
+
+    public Equivalence(Properties conf) {
+        String rename = conf.getProperty("rename", "blind");
+        String literals = conf.getProperty("literals", "blind");
+        boolean treatNullAsLiteral = Boolean.parseBoolean(conf.getProperty("treatNullAsLiteral", "false"));
+        boolean treatSuperThisAsIdentifier = Boolean.parseBoolean(conf.getProperty("treatSuperThisAsIdentifier", "false"));
+        consistent = rename.equals("consistent");
+        int max = 0;
+        for (JavaToken.Kind k : JavaToken.Kind.values()) {
+            max = Math.max(max, k.getKind());
+        }
+        table = new int[max + 1];
+        for (JavaToken.Kind k : JavaToken.Kind.values()) {
+            table[k.getKind()] = compile(k, rename, literals, treatNullAsLiteral, treatSuperThisAsIdentifier);
+        }
+        nextText = new AtomicInteger(FIRST_KIND + table.length);
+    }
+
+    private static int compile(JavaToken.Kind kind, String rename, String literals,
+            boolean treatNullAsLiteral, boolean treatSuperThisAsIdentifier) {
+        JavaToken.Category category = categoryOf(kind);
+        if (category == null) {
+            return TEXT;
+        }
+        switch (category) {
+            case IDENTIFIER:
+                return identifier(rename);
+            case LITERAL:
+                return literal(kind, literals);
+            case KEYWORD:
+                switch (kind) {
+                    case SUPER:
+                    case THIS:
+                        return treatSuperThisAsIdentifier ? identifier(rename) : FIRST_KIND + kind.getKind();
+                    case BOOLEAN:
+                    case BYTE:
+                    case CHAR:
+                    case DOUBLE:
+                    case FLOAT:
+                    case INT:
+                    case LONG:
+                    case SHORT:
+                        return rename.equals("none") ? FIRST_KIND + kind.getKind() : identifier(rename);
+                    case NULL:
+                        return treatNullAsLiteral ? literal(kind, literals) : FIRST_KIND + kind.getKind();
+                    case TRUE:
+                    case FALSE:
+                        return literal(kind, literals);
+                    default:
+                        return FIRST_KIND + kind.getKind();
+                }
+            default:
+                return FIRST_KIND + kind.getKind();
+        }
+    }
+
+    private static JavaToken.Category categoryOf(JavaToken.Kind kind) {
+        try {
+            return TokenTypes.getCategory(kind.getKind());
+        } catch (AssertionError e) {
+            // the kind is used only inside of the lexer
+            return null;
+        }
+    }
+
+    private static int identifier(String rename) {
+        switch (rename) {
+            case "blind":
+                return IDENTIFIER;
+            case "consistent":
+                return PARAMETER;
+            case "none":
+                return TEXT;
+            default:
+                throw new AssertionError("invalid rename: " + rename);
+        }
+    }
+
+    private static int literal(JavaToken.Kind kind, String literals) {
+        switch (literals) {
+            case "blind":
+                return LITERAL;
+            case "typed":
+                return FIRST_KIND + literalType(kind).getKind();
+            case "none":
+                return TEXT;
+            default:
+                throw new AssertionError("invalid literals: " + literals);
+        }
+    }
+
+    /**
+     * Returns the representative kind of the literal type.
+     */
+    private static JavaToken.Kind literalType(JavaToken.Kind kind) {
+        String name = kind.name();
+        if (kind == JavaToken.Kind.TRUE || kind == JavaToken.Kind.FALSE) {
+            return JavaToken.Kind.TRUE;
+        }
+        if (kind == JavaToken.Kind.NULL || kind == JavaToken.Kind.CHARACTER_LITERAL) {
+            return kind;
+        }
+        if (kind == JavaToken.Kind.LONG_LITERAL) {
+            return kind;
+        }
+        if (name.contains("FLOATING") || name.contains("EXPONENT")) {
+            return JavaToken.Kind.FLOATING_POINT_LITERAL;
+        }
+        if (name.startsWith("STRING") || name.startsWith("TEXT_BLOCK")) {
+            return JavaToken.Kind.STRING_LITERAL;
+        }
+        return JavaToken.Kind.INTEGER_LITERAL;
+    }
+
+    /**
+     * Returns the equivalence class of the token. If the identifiers are
+     * renamed consistently, all identifiers are in class {@link #IDENTIFIER}.
+     */
+    public int classOf(JavaToken token) {
+        int c = lookup(token);
+        return c == PARAMETER ? IDENTIFIER : c;
+    }
+
+    private int lookup(JavaToken token) {
+        int kind = token.getKind();
+        int c = kind >= 0 && kind < table.length ? table[kind] : TEXT;
+        if (c != TEXT) {
+            return c;
+        }
+        String key = kind + " " + token.getText();
+        Integer t = texts.get(key);
+        if (t == null) {
+            t = texts.computeIfAbsent(key, k -> nextText.getAndIncrement());
+        }
+        return t;
+    }
+
+    /**
+     * Encodes the tokens as integers.
+     */
+    public int[] encode(List<JavaToken> tokens) {
+        Parameters params = consistent ? new Parameters() : null;
+        return encode(tokens, params);
+    }
+
+    private int[] encode(List<JavaToken> tokens, Parameters params) {
+        int[] codes = new int[tokens.size()];
+        for (int i = 0; i < codes.length; i++) {
+            JavaToken tok = tokens.get(i);
+            int c = lookup(tok);
+            if (c == PARAMETER) {
+                c = params.encode(tok.getText());
+            }
+            codes[i] = c;
+        }
+        return codes;
+    }
+
+    /**
+     * Encodes the lines as integers. There is one array for each line. The
+     * identifiers are renamed consistently across all the lines.
+     */
+    public int[][] encodeLines(List<Line> lines) {
+        Parameters params = consistent ? new Parameters() : null;
+        int[][] codes = new int[lines.size()][];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = encode(lines.get(i).getTokens(), params);
+        }
+        return codes;
+    }
+
+    /**
+     * The identifiers seen so far in the fragment.
+     */
+    private static class Parameters {
+
+        private final Map<String, Integer> last = new HashMap<>();
+        private int count;
+
+        int encode(String name) {
+            Integer prev = last.put(name, count);
+            int code = prev == null ? -1 : -1 - (count - prev);
+            count++;
+            return code;
+        }
+    }
+}
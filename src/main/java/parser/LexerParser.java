@@ -0,0 +1,84 @@
+package parser;
+
+import com.github.javaparser.GeneratedJavaParserConstants;
+import com.github.javaparser.GeneratedJavaParserTokenManager;
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.Providers;
+import com.github.javaparser.Range;
+import com.github.javaparser.SimpleCharStream;
+import com.github.javaparser.Token;
+import com.github.javaparser.TokenMgrException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The parser that only splits the code to tokens by the lexer. It is the
+ * fallback for the fragments that cannot be parsed. The tokens are not
+ * normalized and the lines are the lines of the code.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class LexerParser extends Parser {
+
+    public LexerParser(Properties conf) {
+        super(conf);
+    }
+
+    @Override
+    public Tokens parse(String code, boolean normalize) {
+        return new Tokens(lex(code), false);
+    }
+
+    private List<JavaToken> lex(String code) {
+        GeneratedJavaParserTokenManager tm = new GeneratedJavaParserTokenManager(new SimpleCharStream(Providers.provider(code)));
+        List<JavaToken> tokens = new ArrayList<>();
+        try {
+            for (Token t = tm.getNextToken(); t.kind != GeneratedJavaParserConstants.EOF; t = tm.getNextToken()) {
+                // the lexer returns >> and >>> as several > tokens
+                String text = t.kind == GeneratedJavaParserConstants.GT ? ">" : t.image;
+                Range range = Range.range(t.beginLine, t.beginColumn, t.endLine, t.endColumn);
+                tokens.add(new JavaToken(range, t.kind, text, null, null));
+            }
+        } catch (TokenMgrException e) {
+            throw new ParseException(e.getMessage());
+        }
+        return tokens;
+    }
+
+    @Override
+    public Lines parseToLines(String code, boolean normalize) {
+        List<Line> lines = new ArrayList<>();
+        List<JavaToken> line = new ArrayList<>();
+        int lineNo = -1;
+        for (JavaToken tok : lex(code)) {
+            int n = tok.getRange().get().begin.line;
+            if (n != lineNo && !line.isEmpty()) {
+                lines.add(new Line(line));
+                line = new ArrayList<>();
+            }
+            line.add(tok);
+            lineNo = n;
+        }
+        if (!line.isEmpty()) {
+            lines.add(new Line(line));
+        }
+        return new Lines(lines, false);
+    }
+
+    @Override
+    public List<Tokens> parseVariants(String code, List<Properties> variants) {
+        return Collections.nCopies(variants.size(), parse(code, true));
+    }
+
+    @Override
+    public List<Lines> parseToLinesVariants(String code, List<Properties> variants) {
+        return Collections.nCopies(variants.size(), parseToLines(code, true));
+    }
+
+    @Override
+    public Tree parseToTree(String code, boolean normalize, Equivalence equivalence) {
+        throw new ParseException("no tree without parsing");
+    }
+}
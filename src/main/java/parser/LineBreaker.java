@@ -0,0 +1,166 @@
+package parser;
+
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.TokenRange;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.LabeledStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.stmt.SwitchStmt;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The class that splits tokens to lines by the structure of the AST. The lines
+ * are the same as if the code was pretty-printed, but the code is neither
+ * printed nor parsed again. Each statement and each member starts a new line,
+ * a line ends after the opening brace of a block and the closing brace is on a
+ * separate line.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+class LineBreaker {
+
+    private final IdentityHashMap<JavaToken, Integer> positions = new IdentityHashMap<>();
+    private final boolean[] breaks;
+
+    /**
+     * Creates the line breaker for the tokens before normalization.
+     */
+    LineBreaker(List<JavaToken> tokens) {
+        for (int i = 0; i < tokens.size(); i++) {
+            positions.put(tokens.get(i), i);
+        }
+        breaks = new boolean[tokens.size() + 1];
+    }
+
+    /**
+     * Gives the token the position of the token that it replaces.
+     */
+    void alias(JavaToken token, JavaToken original) {
+        Integer p = positions.get(original);
+        if (p != null) {
+            positions.put(token, p);
+        }
+    }
+
+    /**
+     * Marks the line breaks in the subtree.
+     */
+    void mark(Node n) {
+        if (n instanceof BlockStmt) {
+            breakAfter(begin(n));
+            breakBefore(end(n));
+        } else if (n instanceof Statement) {
+            if (isOnSeparateLine((Statement) n)) {
+                breakBefore(begin(n));
+                breakAfter(end(n));
+            }
+            if (n instanceof SwitchStmt) {
+                breakBefore(end(n));
+            }
+        } else if (n instanceof SwitchEntry) {
+            breakBefore(begin(n));
+        } else if (n instanceof BodyDeclaration) {
+            breakBefore(begin(n));
+            breakAfter(end(n));
+            if (!((BodyDeclaration<?>) n).isCallableDeclaration()) {
+                breakBefore(end(n));
+            }
+        } else if (n instanceof ObjectCreationExpr) {
+            if (((ObjectCreationExpr) n).getAnonymousClassBody().isPresent()) {
+                breakBefore(end(n));
+            }
+        }
+        for (Node child : n.getChildNodes()) {
+            mark(child);
+        }
+    }
+
+    private static boolean isOnSeparateLine(Statement stmt) {
+        Node parent = stmt.getParentNode().orElse(null);
+        if (parent instanceof LambdaExpr || parent instanceof LabeledStmt) {
+            return false;
+        }
+        if (parent instanceof IfStmt) {
+            // else if
+            IfStmt ifStmt = (IfStmt) parent;
+            return !(stmt instanceof IfStmt && ifStmt.getElseStmt().orElse(null) == stmt);
+        }
+        return true;
+    }
+
+    private static JavaToken begin(Node n) {
+        Optional<TokenRange> range = n.getTokenRange();
+        return range.isPresent() ? range.get().getBegin() : null;
+    }
+
+    private static JavaToken end(Node n) {
+        Optional<TokenRange> range = n.getTokenRange();
+        return range.isPresent() ? range.get().getEnd() : null;
+    }
+
+    private void breakBefore(JavaToken token) {
+        Integer p = token == null ? null : positions.get(token);
+        if (p != null) {
+            breaks[p] = true;
+        }
+    }
+
+    private void breakAfter(JavaToken token) {
+        Integer p = token == null ? null : positions.get(token);
+        if (p != null) {
+            breaks[p + 1] = true;
+        }
+    }
+
+    /**
+     * Splits the normalized tokens to lines. A line break at a deleted token
+     * moves to the next token. The braces inserted by normalization are on
+     * separate lines as if they were in the code.
+     */
+    List<Line> split(List<JavaToken> tokens) {
+        List<Line> lines = new ArrayList<>();
+        List<JavaToken> line = new ArrayList<>();
+        int last = -1;
+        for (JavaToken tok : tokens) {
+            Integer p = positions.get(tok);
+            if (p == null) {
+                if (tok.getKind() == JavaToken.Kind.RBRACE.getKind()) {
+                    line = newLine(lines, line);
+                }
+                line.add(tok);
+                if (tok.getKind() == JavaToken.Kind.LBRACE.getKind()
+                        || tok.getKind() == JavaToken.Kind.RBRACE.getKind()) {
+                    line = newLine(lines, line);
+                }
+                continue;
+            }
+            for (int i = last + 1; i <= p; i++) {
+                if (breaks[i]) {
+                    line = newLine(lines, line);
+                    break;
+                }
+            }
+            line.add(tok);
+            last = p;
+        }
+        newLine(lines, line);
+        return lines;
+    }
+
+    private static List<JavaToken> newLine(List<Line> lines, List<JavaToken> line) {
+        if (line.isEmpty()) {
+            return line;
+        }
+        lines.add(new Line(line));
+        return new ArrayList<>();
+    }
+}
@@ -1,35 +1,52 @@
-package parser;
-
-import java.util.List;
-
-/**
- * The class that represents lines created from the source code.
- * 
- * @author Zdenek Tronicek, tronicek@tarleton.edu
- */
-public class Lines {
-
-    private final List<Line> lines;
-    private final boolean wasNormalized;
-
-    public Lines(List<Line> lines, boolean wasNormalized) {
-        this.lines = lines;
-        this.wasNormalized = wasNormalized;
-    }
-
-    public List<Line> getLines() {
-        return lines;
-    }
-    
-    public Line getLine(int index) {
-        return lines.get(index);
-    }
-
-    public boolean wasNormalized() {
-        return wasNormalized;
-    }
-    
-    public int size() {
-        return lines.size();
-    }
-}
+package parser;
+
+import java.util.List;
+
+/**
+ * The class that represents lines created from the source code.
+ * 
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class Lines {
+
+    private final List<Line> lines;
+    private final boolean wasNormalized;
+    private final boolean positioned;
+
+    public Lines(List<Line> lines, boolean wasNormalized) {
+        this(lines, wasNormalized, true);
+    }
+
+    /**
+     * Creates the lines. If {@code positioned} is false, the positions of the
+     * tokens are not in the parsed code (e.g. of the pretty-printed code).
+     */
+    public Lines(List<Line> lines, boolean wasNormalized, boolean positioned) {
+        this.lines = lines;
+        this.wasNormalized = wasNormalized;
+        this.positioned = positioned;
+    }
+
+    public List<Line> getLines() {
+        return lines;
+    }
+    
+    public Line getLine(int index) {
+        return lines.get(index);
+    }
+
+    public boolean wasNormalized() {
+        return wasNormalized;
+    }
+
+    /**
+     * Returns true if the positions of the tokens are in the parsed code.
+     */
+    public boolean isPositioned() {
+        return positioned;
+    }
+    
+    public int size() {
+        return lines.size();
+    }
+}
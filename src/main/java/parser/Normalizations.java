@@ -0,0 +1,297 @@
+package parser;
+
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.TokenRange;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.MarkerAnnotationExpr;
+import com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import com.github.javaparser.ast.expr.SingleMemberAnnotationExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.WhileStmt;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The visitor that records the edits of all normalizations without changing
+ * the AST, so that the tokens of each combination of the normalizations can be
+ * derived from a single parse (see {@link #apply(List, int, LineBreaker)}).
+ * Each edit is tagged by the normalization that makes it. The edits of the
+ * configured normalizations can also be made in the AST and in the tokens (see
+ * {@link #rewrite(int)} and {@link NormalizingVisitor}).
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+class Normalizations extends VoidVisitorAdapter<Void> {
+
+    /**
+     * The options of the normalizations (see {@link #flags(Properties)}).
+     */
+    static final List<String> OPTIONS = Arrays.asList("addBlocks", "ignoreAnnotations", "ignoreParentheses",
+            "ignoreUnaryAtLiterals");
+
+    static final int ADD_BLOCKS = 1;
+    static final int IGNORE_ANNOTATIONS = 2;
+    static final int IGNORE_PARENTHESES = 4;
+    static final int IGNORE_UNARY_AT_LITERALS = 8;
+
+    private final Map<JavaToken, Integer> deleted = new IdentityHashMap<>();
+    private final Map<JavaToken, Integer> opened = new IdentityHashMap<>();
+    private final Map<JavaToken, Integer> closed = new IdentityHashMap<>();
+    private final Map<JavaToken, JavaToken> signs = new IdentityHashMap<>();
+    private final List<Statement> blocks = new ArrayList<>();
+    private final List<EnclosedExpr> enclosed = new ArrayList<>();
+    private final Set<EnclosedExpr> annotated = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int modified;
+    private int modifiedInAnnotations;
+    private int annotations;
+
+    /**
+     * Returns the normalizations that are set in the configuration.
+     */
+    static int flags(Properties conf) {
+        int flags = 0;
+        if (Boolean.parseBoolean(conf.getProperty("addBlocks", "false"))) {
+            flags |= ADD_BLOCKS;
+        }
+        if (Boolean.parseBoolean(conf.getProperty("ignoreAnnotations", "false"))) {
+            flags |= IGNORE_ANNOTATIONS;
+        }
+        if (Boolean.parseBoolean(conf.getProperty("ignoreParentheses", "false"))) {
+            flags |= IGNORE_PARENTHESES;
+        }
+        if (Boolean.parseBoolean(conf.getProperty("ignoreUnaryAtLiterals", "false"))) {
+            flags |= IGNORE_UNARY_AT_LITERALS;
+        }
+        return flags;
+    }
+
+    /**
+     * Returns true if the normalizations modify the AST.
+     */
+    boolean wasModified(int flags) {
+        if ((flags & IGNORE_ANNOTATIONS) == 0 && (modifiedInAnnotations & flags) != 0) {
+            return true;
+        }
+        return (modified & flags) != 0;
+    }
+
+    void visitBody(BodyDeclaration<?> body) {
+        if (body.isConstructorDeclaration()) {
+            visit(body.asConstructorDeclaration(), null);
+            return;
+        }
+        if (body.isMethodDeclaration()) {
+            visit(body.asMethodDeclaration(), null);
+        }
+        if (body.isInitializerDeclaration()) {
+            visit(body.asInitializerDeclaration(), null);
+        }
+    }
+
+    void visitBlockStmt(Statement stmt) {
+        if (stmt.isBlockStmt()) {
+            visit(stmt.asBlockStmt(), null);
+            return;
+        }
+        throw new AssertionError("invalid statement: " + stmt);
+    }
+
+    /**
+     * Returns the tokens normalized by the given normalizations. The tokens
+     * that replace a token of the list are given the position of the original
+     * token in {@code breaker} (if it is not null).
+     */
+    List<JavaToken> apply(List<JavaToken> tokens, int flags, LineBreaker breaker) {
+        boolean addBlocks = (flags & ADD_BLOCKS) != 0;
+        boolean unary = (flags & IGNORE_UNARY_AT_LITERALS) != 0;
+        if (addBlocks) {
+            Set<JavaToken> present = Collections.newSetFromMap(new IdentityHashMap<>());
+            present.addAll(tokens);
+            if (!present.containsAll(opened.keySet()) || !present.containsAll(closed.keySet())) {
+                // NormalizingVisitor cannot find the statement either
+                throw new AssertionError();
+            }
+        }
+        List<JavaToken> normalized = new ArrayList<>(tokens.size());
+        for (JavaToken tok : tokens) {
+            if (addBlocks) {
+                for (int i = opened.getOrDefault(tok, 0); i > 0; i--) {
+                    normalized.add(new JavaToken(JavaToken.Kind.LBRACE.getKind(), "{"));
+                }
+            }
+            Integer d = deleted.get(tok);
+            if (d == null || (d & flags) == 0) {
+                JavaToken sign = unary ? signs.get(tok) : null;
+                if (sign == null) {
+                    normalized.add(tok);
+                } else {
+                    JavaToken lit = new JavaToken(tok.getRange().orElse(null), tok.getKind(), sign.getText() + tok.getText(), null, null);
+                    if (breaker != null) {
+                        breaker.alias(lit, tok);
+                    }
+                    normalized.add(lit);
+                }
+            }
+            if (addBlocks) {
+                for (int i = closed.getOrDefault(tok, 0); i > 0; i--) {
+                    normalized.add(new JavaToken(JavaToken.Kind.RBRACE.getKind(), "}"));
+                }
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * Makes the edits of the given normalizations in the AST and in the
+     * tokens of the AST: the statements are put to blocks, the parentheses
+     * are replaced by their content and the signs are joined with the
+     * literals (the text of the literal token is changed). The content of the
+     * annotations is not changed if they are ignored. Then the tokens are
+     * given by {@link #apply(List, int, LineBreaker)} with the literals that
+     * already hold their signs.
+     */
+    void rewrite(int flags) {
+        boolean ignoreAnnotations = (flags & IGNORE_ANNOTATIONS) != 0;
+        if ((flags & ADD_BLOCKS) != 0) {
+            for (Statement stmt : blocks) {
+                BlockStmt block = new BlockStmt();
+                stmt.getParentNode().get().replace(stmt, block);
+                block.addStatement(stmt);
+            }
+        }
+        if ((flags & IGNORE_PARENTHESES) != 0) {
+            for (EnclosedExpr n : enclosed) {
+                if (!(ignoreAnnotations && annotated.contains(n))) {
+                    n.getParentNode().get().replace(n, n.getInner());
+                }
+            }
+        }
+        if ((flags & IGNORE_UNARY_AT_LITERALS) != 0) {
+            for (Map.Entry<JavaToken, JavaToken> e : signs.entrySet()) {
+                JavaToken lit = e.getKey();
+                lit.setText(e.getValue().getText() + lit.getText());
+            }
+            signs.clear();
+        }
+    }
+
+    private void delete(JavaToken token, int flag) {
+        deleted.merge(token, flag, (a, b) -> a | b);
+    }
+
+    private void deleteTokens(Node n, int flag) {
+        TokenRange range = n.getTokenRange().get();
+        JavaToken tok = range.getBegin();
+        JavaToken end = range.getEnd();
+        while (tok != end) {
+            delete(tok, flag);
+            tok = tok.getNextToken().get();
+        }
+        delete(tok, flag);
+    }
+
+    private void addBlock(Statement stmt) {
+        if (stmt.isBlockStmt()) {
+            return;
+        }
+        TokenRange range = stmt.getTokenRange().get();
+        opened.merge(range.getBegin(), 1, Integer::sum);
+        closed.merge(range.getEnd(), 1, Integer::sum);
+        blocks.add(stmt);
+        modified |= ADD_BLOCKS;
+    }
+
+    @Override
+    public void visit(EnclosedExpr n, Void arg) {
+        TokenRange range = n.getTokenRange().get();
+        delete(range.getBegin(), IGNORE_PARENTHESES);
+        delete(range.getEnd(), IGNORE_PARENTHESES);
+        enclosed.add(n);
+        if (annotations > 0) {
+            // the parentheses are not there if the annotations are ignored
+            annotated.add(n);
+            modifiedInAnnotations |= IGNORE_PARENTHESES;
+        } else {
+            modified |= IGNORE_PARENTHESES;
+        }
+        super.visit(n, arg);
+    }
+
+    @Override
+    public void visit(ForEachStmt n, Void arg) {
+        addBlock(n.getBody());
+        super.visit(n, arg);
+    }
+
+    @Override
+    public void visit(ForStmt n, Void arg) {
+        addBlock(n.getBody());
+        super.visit(n, arg);
+    }
+
+    @Override
+    public void visit(IfStmt n, Void arg) {
+        addBlock(n.getThenStmt());
+        n.getElseStmt().ifPresent(this::addBlock);
+        super.visit(n, arg);
+    }
+
+    @Override
+    public void visit(WhileStmt n, Void arg) {
+        addBlock(n.getBody());
+        super.visit(n, arg);
+    }
+
+    /*
+     * The content of the annotations is visited for the combinations that
+     * keep the annotations.
+     */
+    @Override
+    public void visit(NormalAnnotationExpr n, Void arg) {
+        deleteTokens(n, IGNORE_ANNOTATIONS);
+        annotations++;
+        super.visit(n, arg);
+        annotations--;
+    }
+
+    @Override
+    public void visit(MarkerAnnotationExpr n, Void arg) {
+        deleteTokens(n, IGNORE_ANNOTATIONS);
+        annotations++;
+        super.visit(n, arg);
+        annotations--;
+    }
+
+    @Override
+    public void visit(SingleMemberAnnotationExpr n, Void arg) {
+        deleteTokens(n, IGNORE_ANNOTATIONS);
+        annotations++;
+        super.visit(n, arg);
+        annotations--;
+    }
+
+    @Override
+    public void visit(UnaryExpr n, Void arg) {
+        if (n.getExpression().isLiteralExpr()) {
+            TokenRange range = n.getTokenRange().get();
+            JavaToken tok = range.getBegin();
+            signs.put(range.getEnd(), tok);
+            delete(tok, IGNORE_UNARY_AT_LITERALS);
+        }
+        super.visit(n, arg);
+    }
+}
@@ -1,9 +1,16 @@
-package parser;
-
-/**
- * Parse exception.
- *
- * @author Zdenek Tronicek
- */
-public class ParseException extends RuntimeException {
-}
+package parser;
+
+/**
+ * Parse exception.
+ *
+ * @author Zdenek Tronicek
+ */
+public class ParseException extends RuntimeException {
+
+    public ParseException() {
+    }
+
+    public ParseException(String message) {
+        super(message);
+    }
+}
@@ -1,49 +1,94 @@
-package parser;
-
-import com.github.javaparser.ParserConfiguration;
-import java.nio.charset.Charset;
-import java.util.Properties;
-
-/**
- * The common parent of parsers.
- *
- * @author Zdenek Tronicek, tronicek@tarleton.edu
- */
-public abstract class Parser {
-
-    protected final Properties conf;
-    protected final ParserConfiguration parserConfiguration = new ParserConfiguration();
-
-    public static Parser instantiate(Properties conf) {
-        String level = conf.getProperty("level");
-        switch (level) {
-            case "method":
-                return new MethodParser(conf);
-            case "statement":
-            case "statements":
-                return new StatementParser(conf);
-            default:
-                throw new AssertionError("invalid level: " + level);
-        }
-    }
-
-    protected Parser(Properties conf) {
-        this.conf = conf;
-        prepareParserConfiguration();
-    }
-
-    private void prepareParserConfiguration() {
-        boolean preprocessUnicodeEscapes = Boolean.parseBoolean(conf.getProperty("preprocessUnicodeEscapes"));
-        String languageLevel = conf.getProperty("languageLevel", "JAVA_8");
-        String sourceEncoding = conf.getProperty("sourceEncoding", "UTF-8");
-        ParserConfiguration.LanguageLevel lang = ParserConfiguration.LanguageLevel.valueOf(languageLevel);
-        parserConfiguration.setPreprocessUnicodeEscapes(preprocessUnicodeEscapes);
-        parserConfiguration.setLanguageLevel(lang);
-        Charset cs = Charset.forName(sourceEncoding);
-        parserConfiguration.setCharacterEncoding(cs);
-    }
-
-    public abstract Tokens parse(String code, boolean normalize);
-
-    public abstract Lines parseToLines(String code, boolean normalize);
-}
+package parser;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The common parent of parsers. A parser is not thread-safe; it reuses its
+ * JavaParser for all fragments.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public abstract class Parser {
+
+    /**
+     * The options that the parsers read (including the normalizations).
+     */
+    public static final List<String> OPTIONS;
+
+    static {
+        List<String> options = new ArrayList<>(Arrays.asList("language", "level", "preprocessUnicodeEscapes",
+                "languageLevel", "sourceEncoding"));
+        options.addAll(Normalizations.OPTIONS);
+        OPTIONS = Collections.unmodifiableList(options);
+    }
+
+    protected final Properties conf;
+    protected final ParserConfiguration parserConfiguration = new ParserConfiguration();
+    private JavaParser javaParser;
+
+    public static Parser instantiate(Properties conf) {
+        String language = conf.getProperty("language", "java");
+        if (!language.equals("java")) {
+            return new TokenizerParser(conf, TokenizerParser.Language.of(language));
+        }
+        String level = conf.getProperty("level");
+        switch (level) {
+            case "method":
+                return new MethodParser(conf);
+            case "statement":
+            case "statements":
+                return new StatementParser(conf);
+            default:
+                throw new AssertionError("invalid level: " + level);
+        }
+    }
+
+    protected Parser(Properties conf) {
+        this.conf = conf;
+        prepareParserConfiguration();
+    }
+
+    private void prepareParserConfiguration() {
+        boolean preprocessUnicodeEscapes = Boolean.parseBoolean(conf.getProperty("preprocessUnicodeEscapes"));
+        String languageLevel = conf.getProperty("languageLevel", "JAVA_8");
+        String sourceEncoding = conf.getProperty("sourceEncoding", "UTF-8");
+        ParserConfiguration.LanguageLevel lang = ParserConfiguration.LanguageLevel.valueOf(languageLevel);
+        parserConfiguration.setPreprocessUnicodeEscapes(preprocessUnicodeEscapes);
+        parserConfiguration.setLanguageLevel(lang);
+        Charset cs = Charset.forName(sourceEncoding);
+        parserConfiguration.setCharacterEncoding(cs);
+    }
+
+    protected JavaParser getJavaParser() {
+        if (javaParser == null) {
+            javaParser = new JavaParser(parserConfiguration);
+        }
+        return javaParser;
+    }
+
+    public abstract Tokens parse(String code, boolean normalize);
+
+    public abstract Lines parseToLines(String code, boolean normalize);
+
+    public abstract Tree parseToTree(String code, boolean normalize, Equivalence equivalence);
+
+    /**
+     * Parses the code once and returns the tokens normalized by each of the
+     * configurations (only the normalizations, such as {@code addBlocks}, are
+     * taken from the configurations).
+     */
+    public abstract List<Tokens> parseVariants(String code, List<Properties> variants);
+
+    /**
+     * Parses the code once and returns the lines normalized by each of the
+     * configurations.
+     */
+    public abstract List<Lines> parseToLinesVariants(String code, List<Properties> variants);
+}
@@ -1,135 +1,223 @@
-package parser;
-
-import com.github.javaparser.JavaParser;
-import com.github.javaparser.JavaToken;
-import com.github.javaparser.ParseResult;
-import com.github.javaparser.TokenRange;
-import com.github.javaparser.ast.stmt.BlockStmt;
-import com.github.javaparser.ast.stmt.ExplicitConstructorInvocationStmt;
-import com.github.javaparser.ast.stmt.Statement;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-/**
- * The parser that parses statements.
- *
- * @author Zdenek Tronicek, tronicek@tarleton.edu
- */
-public class StatementParser extends Parser {
-
-    public StatementParser(Properties conf) {
-        super(conf);
-    }
-
-    @Override
-    public Tokens parse(String code, boolean normalize) {
-        JavaParser parser = new JavaParser(parserConfiguration);
-        Statement invoc = null;
-        String thisOrSuper = constructorInvocation(code);
-        if (!thisOrSuper.isEmpty()) {
-            invoc = parseConstructorInvocation(parser, thisOrSuper);
-            code = code.substring(thisOrSuper.length());
-        }
-        Statement stmt = parseBlock(parser, "{ " + code + " }");
-        List<JavaToken> tokens = new ArrayList<>();
-        if (invoc != null) {
-            List<JavaToken> itt = tokenize(invoc);
-            tokens.addAll(itt);
-        }
-        List<JavaToken> btt = tokenize(stmt);
-        btt = btt.subList(1, btt.size() - 1);
-        tokens.addAll(btt);
-        boolean wasNormalized = false;
-        if (normalize) {
-            NormalizingVisitor norm = new NormalizingVisitor(conf, tokens);
-            norm.visitBlockStmt(stmt);
-            wasNormalized = norm.wasModified();
-        }
-        return new Tokens(tokens, wasNormalized);
-    }
-
-    private String constructorInvocation(String code) {
-        String str = code.trim();
-        Pattern pat = Pattern.compile("super\\s*\\(");
-        Matcher m = pat.matcher(str);
-        if (m.find() && m.start() == 0) {
-            int i = findCallEnd(str, m.end());
-            return str.substring(0, i);
-        }
-        Pattern pat2 = Pattern.compile("this\\s*\\(");
-        Matcher m2 = pat2.matcher(str);
-        if (m2.find() && m2.start() == 0) {
-            int i = findCallEnd(str, m2.end());
-            return str.substring(0, i);
-        }
-        return "";
-    }
-
-    private int findCallEnd(String code, int i) {
-        int c = 1;
-        for (; c > 0; i++) {
-            char ch = code.charAt(i);
-            switch (ch) {
-                case '(':
-                    c++;
-                    break;
-                case ')':
-                    c--;
-            }
-        }
-        while (code.charAt(i) != ';') {
-            i++;
-        }
-        return i + 1;
-    }
-
-    private Statement parseConstructorInvocation(JavaParser parser, String code) {
-        ParseResult<ExplicitConstructorInvocationStmt> result = parser.parseExplicitConstructorInvocationStmt(code);
-        if (!result.isSuccessful()) {
-            System.err.println("parser error " + result.getProblems());
-            throw new AssertionError();
-        }
-        return result.getResult().get();
-    }
-
-    private Statement parseBlock(JavaParser parser, String code) {
-        ParseResult<BlockStmt> result = parser.parseBlock(code);
-        if (!result.isSuccessful()) {
-            System.err.println("parser error " + result.getProblems());
-            throw new AssertionError();
-        }
-        return result.getResult().get();
-    }
-
-    private List<JavaToken> tokenize(Statement stmt) {
-        List<JavaToken> tokens = new ArrayList<>();
-        Optional<TokenRange> opt = stmt.getTokenRange();
-        if (opt.isPresent()) {
-            TokenRange range = opt.get();
-            JavaToken token = range.getBegin();
-            JavaToken end = range.getEnd();
-            while (token != end) {
-                switch (token.getCategory()) {
-                    case COMMENT:
-                    case EOL:
-                    case WHITESPACE_NO_EOL:
-                        break;
-                    default:
-                        tokens.add(token);
-                }
-                token = token.getNextToken().orElse(null);
-            }
-            tokens.add(token);
-        }
-        return tokens;
-    }
-
-    @Override
-    public Lines parseToLines(String code, boolean normalize) {
-        throw new UnsupportedOperationException("Not supported yet.");
-    }
-}
+package parser;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.TokenRange;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ExplicitConstructorInvocationStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The parser that parses statements.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class StatementParser extends Parser {
+
+    public StatementParser(Properties conf) {
+        super(conf);
+    }
+
+    @Override
+    public Tokens parse(String code, boolean normalize) {
+        Parsed p = parseStatements(code);
+        boolean wasNormalized = false;
+        if (normalize) {
+            NormalizingVisitor norm = new NormalizingVisitor(conf, p.tokens);
+            norm.visitBlockStmt(p.stmt);
+            wasNormalized = norm.wasModified();
+        }
+        return new Tokens(p.tokens, wasNormalized);
+    }
+
+    /**
+     * The parsed statements: the leading constructor invocation (or null),
+     * the block of the other statements and the tokens of both (without the
+     * braces of the block).
+     */
+    private static class Parsed {
+
+        private Statement invoc;
+        private Statement stmt;
+        private final List<JavaToken> tokens = new ArrayList<>();
+    }
+
+    private Parsed parseStatements(String code) {
+        JavaParser parser = getJavaParser();
+        Parsed p = new Parsed();
+        String thisOrSuper = constructorInvocation(code);
+        if (!thisOrSuper.isEmpty()) {
+            p.invoc = parseConstructorInvocation(parser, thisOrSuper);
+            code = code.substring(thisOrSuper.length());
+        }
+        p.stmt = parseBlock(parser, "{ " + code + " }");
+        if (p.invoc != null) {
+            p.tokens.addAll(tokenize(p.invoc));
+        }
+        List<JavaToken> btt = tokenize(p.stmt);
+        p.tokens.addAll(btt.subList(1, btt.size() - 1));
+        return p;
+    }
+
+    /**
+     * Returns the line breaker of the statements; the leading constructor
+     * invocation is on separate line(s).
+     */
+    private static LineBreaker breaker(Parsed p) {
+        LineBreaker breaker = new LineBreaker(p.tokens);
+        if (p.invoc != null) {
+            breaker.mark(p.invoc);
+        }
+        breaker.mark(p.stmt);
+        return breaker;
+    }
+
+    private String constructorInvocation(String code) {
+        String str = code.trim();
+        Pattern pat = Pattern.compile("super\\s*\\(");
+        Matcher m = pat.matcher(str);
+        if (m.find() && m.start() == 0) {
+            int i = findCallEnd(str, m.end());
+            return str.substring(0, i);
+        }
+        Pattern pat2 = Pattern.compile("this\\s*\\(");
+        Matcher m2 = pat2.matcher(str);
+        if (m2.find() && m2.start() == 0) {
+            int i = findCallEnd(str, m2.end());
+            return str.substring(0, i);
+        }
+        return "";
+    }
+
+    private int findCallEnd(String code, int i) {
+        int c = 1;
+        for (; c > 0; i++) {
+            if (i >= code.length()) {
+                throw new ParseException("unterminated constructor invocation");
+            }
+            char ch = code.charAt(i);
+            switch (ch) {
+                case '(':
+                    c++;
+                    break;
+                case ')':
+                    c--;
+            }
+        }
+        while (i < code.length() && code.charAt(i) != ';') {
+            i++;
+        }
+        if (i == code.length()) {
+            throw new ParseException("unterminated constructor invocation");
+        }
+        return i + 1;
+    }
+
+    private Statement parseConstructorInvocation(JavaParser parser, String code) {
+        ParseResult<ExplicitConstructorInvocationStmt> result = parser.parseExplicitConstructorInvocationStmt(code);
+        if (!result.isSuccessful()) {
+            throw new ParseException(result.getProblems().toString());
+        }
+        return result.getResult().get();
+    }
+
+    private Statement parseBlock(JavaParser parser, String code) {
+        ParseResult<BlockStmt> result = parser.parseBlock(code);
+        if (!result.isSuccessful()) {
+            throw new ParseException(result.getProblems().toString());
+        }
+        return result.getResult().get();
+    }
+
+    private List<JavaToken> tokenize(Statement stmt) {
+        List<JavaToken> tokens = new ArrayList<>();
+        Optional<TokenRange> opt = stmt.getTokenRange();
+        if (opt.isPresent()) {
+            TokenRange range = opt.get();
+            JavaToken token = range.getBegin();
+            JavaToken end = range.getEnd();
+            while (token != end) {
+                switch (token.getCategory()) {
+                    case COMMENT:
+                    case EOL:
+                    case WHITESPACE_NO_EOL:
+                        break;
+                    default:
+                        tokens.add(token);
+                }
+                token = token.getNextToken().orElse(null);
+            }
+            tokens.add(token);
+        }
+        return tokens;
+    }
+
+    /**
+     * Parses the statements and splits them to lines. The code is parsed only
+     * once and the lines are given by the AST (see {@link LineBreaker}). The
+     * leading constructor invocation is on separate line(s).
+     */
+    @Override
+    public Lines parseToLines(String code, boolean normalize) {
+        Parsed p = parseStatements(code);
+        LineBreaker breaker = breaker(p);
+        boolean wasNormalized = false;
+        if (normalize) {
+            NormalizingVisitor norm = new NormalizingVisitor(conf, p.tokens);
+            norm.visitBlockStmt(p.stmt);
+            wasNormalized = norm.wasModified();
+        }
+        List<Line> lines = breaker.split(p.tokens);
+        return new Lines(lines, wasNormalized);
+    }
+
+    @Override
+    public List<Tokens> parseVariants(String code, List<Properties> variants) {
+        Parsed p = parseStatements(code);
+        Normalizations norm = new Normalizations();
+        norm.visitBlockStmt(p.stmt);
+        List<Tokens> result = new ArrayList<>();
+        for (Properties v : variants) {
+            int flags = Normalizations.flags(v);
+            result.add(new Tokens(norm.apply(p.tokens, flags, null), norm.wasModified(flags)));
+        }
+        return result;
+    }
+
+    @Override
+    public List<Lines> parseToLinesVariants(String code, List<Properties> variants) {
+        Parsed p = parseStatements(code);
+        LineBreaker breaker = breaker(p);
+        Normalizations norm = new Normalizations();
+        norm.visitBlockStmt(p.stmt);
+        List<Lines> result = new ArrayList<>();
+        for (Properties v : variants) {
+            int flags = Normalizations.flags(v);
+            result.add(new Lines(breaker.split(norm.apply(p.tokens, flags, breaker)), norm.wasModified(flags)));
+        }
+        return result;
+    }
+
+    @Override
+    public Tree parseToTree(String code, boolean normalize, Equivalence equivalence) {
+        Parsed p = parseStatements(code);
+        List<Node> roots = new ArrayList<>();
+        if (p.invoc != null) {
+            roots.add(p.invoc);
+        }
+        roots.add(p.stmt);
+        if (normalize) {
+            NormalizingVisitor norm = new NormalizingVisitor(conf, p.tokens);
+            norm.visitBlockStmt(p.stmt);
+        }
+        return Tree.build(roots, conf, equivalence);
+    }
+}
@@ -0,0 +1,384 @@
+package parser;
+
+import com.github.javaparser.GeneratedJavaParserConstants;
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.Range;
+import com.github.javaparser.TokenTypes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * The parser of other languages than Java (C, C# and Python). The code is only
+ * split to tokens by a simple lexer and the tokens are given the kinds of the
+ * Java tokens, so that they fall into the same equivalence classes (see
+ * {@link Equivalence}): identifiers, literals (by type), and the keywords and
+ * operators that Java has too. The other keywords and operators have kind
+ * {@link #OTHER} and they are equal iff they have the same text. The lines are
+ * the lines of the code and the tokens are not normalized.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class TokenizerParser extends Parser {
+
+    /**
+     * The kind of the tokens that have no counterpart in Java.
+     */
+    public static final int OTHER = -1;
+
+    private static final Map<String, Integer> JAVA_KINDS = new HashMap<>();
+
+    static {
+        String[] images = GeneratedJavaParserConstants.tokenImage;
+        for (int k = 0; k < images.length; k++) {
+            String image = images[k];
+            if (image.length() < 3 || !image.startsWith("\"") || !image.endsWith("\"")) {
+                continue;
+            }
+            try {
+                switch (TokenTypes.getCategory(k)) {
+                    case KEYWORD:
+                    case OPERATOR:
+                    case SEPARATOR:
+                        JAVA_KINDS.put(image.substring(1, image.length() - 1), k);
+                        break;
+                    default:
+                }
+            } catch (AssertionError e) {
+                // the kind is used only inside of the lexer
+            }
+        }
+    }
+
+    /**
+     * The supported languages.
+     */
+    public enum Language {
+
+        C("auto break case char const continue default do double else enum extern float for goto if inline int long "
+                + "register restrict return short signed sizeof static struct switch typedef union unsigned void "
+                + "volatile while _Bool _Complex NULL",
+                ">>= <<= ... -> ++ -- << >> <= >= == != && || += -= *= /= %= &= ^= |= ##",
+                "NULL null"),
+        CSHARP("abstract as base bool break byte case catch char checked class const continue decimal default "
+                + "delegate do double else enum event explicit extern false finally fixed float for foreach goto if "
+                + "implicit in int interface internal is lock long namespace new null object operator out override "
+                + "params private protected public readonly ref return sbyte sealed short sizeof stackalloc static "
+                + "string struct switch this throw true try typeof uint ulong unchecked unsafe ushort using virtual "
+                + "void volatile while",
+                ">>= <<= ??= -> ++ -- << >> <= >= == != && || += -= *= /= %= &= ^= |= ?? ?. => ::",
+                "bool boolean base super"),
+        PYTHON("False None True and as assert async await break class continue def del elif else except finally "
+                + "for from global if import in is lambda nonlocal not or pass raise return try while with yield",
+                "**= //= >>= <<= -> := ** // << >> <= >= == != += -= *= /= %= &= |= ^= @=",
+                "None null True true False false");
+
+        private final Set<String> keywords;
+        private final List<String> operators;
+        private final Map<String, String> aliases = new HashMap<>();
+
+        Language(String keywords, String operators, String aliases) {
+            this.keywords = new HashSet<>(Arrays.asList(keywords.split(" ")));
+            // the longest operators first
+            this.operators = Arrays.asList(operators.split(" "));
+            this.operators.sort((a, b) -> b.length() - a.length());
+            String[] aa = aliases.split(" ");
+            for (int i = 0; i < aa.length; i += 2) {
+                this.aliases.put(aa[i], aa[i + 1]);
+            }
+        }
+
+        public static Language of(String name) {
+            switch (name) {
+                case "c":
+                    return C;
+                case "csharp":
+                    return CSHARP;
+                case "python":
+                    return PYTHON;
+                default:
+                    throw new AssertionError("invalid language: " + name);
+            }
+        }
+    }
+
+    private final Language language;
+
+    public TokenizerParser(Properties conf, Language language) {
+        super(conf);
+        this.language = language;
+    }
+
+    @Override
+    public Tokens parse(String code, boolean normalize) {
+        return new Tokens(tokenize(code), false);
+    }
+
+    @Override
+    public Lines parseToLines(String code, boolean normalize) {
+        List<Line> lines = new ArrayList<>();
+        List<JavaToken> line = new ArrayList<>();
+        int lineNo = -1;
+        for (JavaToken tok : tokenize(code)) {
+            int n = tok.getRange().get().begin.line;
+            if (n != lineNo && !line.isEmpty()) {
+                lines.add(new Line(line));
+                line = new ArrayList<>();
+            }
+            line.add(tok);
+            lineNo = n;
+        }
+        if (!line.isEmpty()) {
+            lines.add(new Line(line));
+        }
+        return new Lines(lines, false);
+    }
+
+    @Override
+    public Tree parseToTree(String code, boolean normalize, Equivalence equivalence) {
+        throw new ParseException("no tree without parsing");
+    }
+
+    @Override
+    public List<Tokens> parseVariants(String code, List<Properties> variants) {
+        return Collections.nCopies(variants.size(), parse(code, true));
+    }
+
+    @Override
+    public List<Lines> parseToLinesVariants(String code, List<Properties> variants) {
+        return Collections.nCopies(variants.size(), parseToLines(code, true));
+    }
+
+    /**
+     * Splits the code to tokens. The lexer does not fail: an unknown character
+     * is a token of its own and an unterminated comment or string ends at the
+     * end of the code.
+     */
+    List<JavaToken> tokenize(String code) {
+        return new Lexer(code).tokens;
+    }
+
+    private class Lexer {
+
+        private final String code;
+        private final List<JavaToken> tokens = new ArrayList<>();
+        private int pos;
+        private int line = 1;
+        private int column = 1;
+        private boolean lineStart = true;
+
+        Lexer(String code) {
+            this.code = code;
+            while (pos < code.length()) {
+                next();
+            }
+        }
+
+        private char peek(int offset) {
+            int i = pos + offset;
+            return i < code.length() ? code.charAt(i) : '\0';
+        }
+
+        /**
+         * Moves by {@code n} characters and keeps the line and column.
+         */
+        private void advance(int n) {
+            for (int i = 0; i < n && pos < code.length(); i++) {
+                char c = code.charAt(pos++);
+                if (c == '\n') {
+                    line++;
+                    column = 1;
+                    lineStart = true;
+                } else {
+                    column++;
+                }
+            }
+        }
+
+        private void skipToLineEnd() {
+            while (pos < code.length() && code.charAt(pos) != '\n') {
+                advance(1);
+            }
+        }
+
+        private void next() {
+            char c = code.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                advance(1);
+                return;
+            }
+            boolean first = lineStart;
+            lineStart = false;
+            if (language == Language.PYTHON) {
+                if (c == '#') {
+                    skipToLineEnd();
+                    return;
+                }
+            } else {
+                if (c == '/' && peek(1) == '/') {
+                    skipToLineEnd();
+                    return;
+                }
+                if (c == '/' && peek(1) == '*') {
+                    int end = code.indexOf("*/", pos + 2);
+                    advance(end < 0 ? code.length() - pos : end + 2 - pos);
+                    return;
+                }
+                if (c == '#' && first) {
+                    // a preprocessor directive (possibly continued by \)
+                    while (pos < code.length() && code.charAt(pos) != '\n') {
+                        advance(code.charAt(pos) == '\\' ? 2 : 1);
+                    }
+                    return;
+                }
+            }
+            int begin = pos;
+            int beginLine = line;
+            int beginColumn = column;
+            int kind = scan();
+            String text = code.substring(begin, pos);
+            Range range = Range.range(beginLine, beginColumn, line, Math.max(1, column - 1));
+            tokens.add(new JavaToken(range, kind, text, null, null));
+        }
+
+        /**
+         * Scans a token and returns its kind.
+         */
+        private int scan() {
+            char c = code.charAt(pos);
+            if (Character.isDigit(c) || (c == '.' && Character.isDigit(peek(1)))) {
+                return number();
+            }
+            int quote = stringStart();
+            if (quote >= 0) {
+                return string(quote);
+            }
+            if (Character.isJavaIdentifierStart(c) || (c == '@' && language == Language.CSHARP && Character.isJavaIdentifierStart(peek(1)))) {
+                int begin = pos;
+                advance(1);
+                while (pos < code.length() && Character.isJavaIdentifierPart(code.charAt(pos))) {
+                    advance(1);
+                }
+                return word(code.substring(begin, pos));
+            }
+            for (String op : language.operators) {
+                if (code.startsWith(op, pos)) {
+                    advance(op.length());
+                    return JAVA_KINDS.getOrDefault(op, OTHER);
+                }
+            }
+            advance(1);
+            return JAVA_KINDS.getOrDefault(String.valueOf(c), OTHER);
+        }
+
+        private int word(String w) {
+            if (w.startsWith("@")) {
+                // a verbatim identifier in C#
+                return JavaToken.Kind.IDENTIFIER.getKind();
+            }
+            if (!language.keywords.contains(w)) {
+                return JavaToken.Kind.IDENTIFIER.getKind();
+            }
+            String java = language.aliases.getOrDefault(w, w);
+            return JAVA_KINDS.getOrDefault(java, OTHER);
+        }
+
+        private int number() {
+            boolean hex = peek(0) == '0' && (peek(1) == 'x' || peek(1) == 'X');
+            boolean floating = false;
+            if (hex) {
+                advance(2);
+            }
+            while (pos < code.length()) {
+                char c = code.charAt(pos);
+                if (c == '.' && !hex && !floating && peek(1) != '.') {
+                    floating = true;
+                } else if (!hex && (c == 'e' || c == 'E') || hex && (c == 'p' || c == 'P')) {
+                    floating = true;
+                    if (peek(1) == '+' || peek(1) == '-') {
+                        advance(1);
+                    }
+                } else if (!Character.isLetterOrDigit(c) && c != '_') {
+                    break;
+                }
+                advance(1);
+            }
+            char last = Character.toLowerCase(code.charAt(pos - 1));
+            if (!hex && (last == 'f' || last == 'd' || last == 'm' || last == 'j')) {
+                floating = true;
+            }
+            if (floating) {
+                return JavaToken.Kind.FLOATING_POINT_LITERAL.getKind();
+            }
+            return last == 'l' ? JavaToken.Kind.LONG_LITERAL.getKind() : JavaToken.Kind.INTEGER_LITERAL.getKind();
+        }
+
+        /**
+         * Returns the length of the prefix of a string (or character) literal
+         * that starts here, or -1.
+         */
+        private int stringStart() {
+            int i = 0;
+            if (language == Language.PYTHON) {
+                while (i < 2 && "rRbBuUfF".indexOf(peek(i)) >= 0) {
+                    i++;
+                }
+            } else if (language == Language.CSHARP) {
+                while (i < 2 && (peek(i) == '@' || peek(i) == '$')) {
+                    i++;
+                }
+            } else if (peek(0) == 'L' || peek(0) == 'u' || peek(0) == 'U') {
+                i = peek(0) == 'u' && peek(1) == '8' ? 2 : 1;
+            }
+            char q = peek(i);
+            if (q == '"' || q == '\'') {
+                return i;
+            }
+            return -1;
+        }
+
+        private int string(int prefix) {
+            String p = code.substring(pos, pos + prefix);
+            boolean verbatim = language == Language.CSHARP && p.indexOf('@') >= 0;
+            advance(prefix);
+            char q = code.charAt(pos);
+            boolean triple = language == Language.PYTHON && peek(1) == q && peek(2) == q;
+            advance(triple ? 3 : 1);
+            while (pos < code.length()) {
+                char c = code.charAt(pos);
+                if (c == '\\' && !verbatim) {
+                    advance(2);
+                    continue;
+                }
+                if (c == q) {
+                    if (triple) {
+                        if (peek(1) == q && peek(2) == q) {
+                            advance(3);
+                            break;
+                        }
+                    } else if (verbatim && peek(1) == q) {
+                        advance(2);
+                        continue;
+                    } else {
+                        advance(1);
+                        break;
+                    }
+                } else if (c == '\n' && !triple && !verbatim) {
+                    // unterminated
+                    break;
+                }
+                advance(1);
+            }
+            if (q == '\'' && language != Language.PYTHON) {
+                return JavaToken.Kind.CHARACTER_LITERAL.getKind();
+            }
+            return JavaToken.Kind.STRING_LITERAL.getKind();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package parser;
+
+import com.github.javaparser.JavaToken;
+import com.github.javaparser.TokenRange;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.LiteralExpr;
+import com.github.javaparser.ast.expr.Name;
+import com.github.javaparser.ast.expr.SimpleName;
+import com.github.javaparser.ast.expr.SuperExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.type.PrimitiveType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The class that represents the normalized AST of a fragment. The nodes are
+ * numbered in postorder and each node has an integer label. The identifiers
+ * and literals are labeled by their equivalence classes, so that the tree is
+ * abstracted in the same way as the tokens.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class Tree {
+
+    private static final ConcurrentHashMap<String, Integer> LABELS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_LABEL = new AtomicInteger();
+
+    private final int[] labels;
+    private final int[] leftmost;
+    private final int[] keyroots;
+    private final long key;
+
+    private Tree(int[] labels, int[] leftmost, long key) {
+        this.labels = labels;
+        this.leftmost = leftmost;
+        this.keyroots = computeKeyroots(leftmost);
+        this.key = key;
+    }
+
+    /**
+     * Returns the labels of the nodes in postorder.
+     */
+    public int[] getLabels() {
+        return labels;
+    }
+
+    /**
+     * Returns the leftmost leaf of the subtree rooted at each node.
+     */
+    public int[] getLeftmost() {
+        return leftmost;
+    }
+
+    /**
+     * Returns the nodes that have a left sibling, and the root.
+     */
+    public int[] getKeyroots() {
+        return keyroots;
+    }
+
+    /**
+     * Returns the hash of the whole tree. Equal trees have equal keys.
+     */
+    public long getKey() {
+        return key;
+    }
+
+    public int size() {
+        return labels.length;
+    }
+
+    private static int[] computeKeyroots(int[] leftmost) {
+        int n = leftmost.length;
+        boolean[] seen = new boolean[n];
+        int[] kr = new int[n];
+        int k = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            if (!seen[leftmost[i]]) {
+                seen[leftmost[i]] = true;
+                kr[k++] = i;
+            }
+        }
+        int[] p = new int[k];
+        for (int i = 0; i < k; i++) {
+            p[i] = kr[k - 1 - i];
+        }
+        return p;
+    }
+
+    /**
+     * Builds the tree from the AST. If there are more roots, they become the
+     * children of an artificial root.
+     */
+    static Tree build(List<Node> roots, Properties conf, Equivalence equivalence) {
+        Builder b = new Builder(conf);
+        for (Node root : roots) {
+            b.collect(root);
+        }
+        int[] codes = equivalence.encode(b.tokens);
+        if (roots.size() == 1) {
+            b.build(roots.get(0), codes);
+        } else {
+            int first = b.size;
+            for (Node root : roots) {
+                b.build(root, codes);
+            }
+            b.add("Fragment", first, b.children(first));
+        }
+        int[] labels = new int[b.size];
+        int[] leftmost = new int[b.size];
+        System.arraycopy(b.labels, 0, labels, 0, b.size);
+        System.arraycopy(b.leftmost, 0, leftmost, 0, b.size);
+        return new Tree(labels, leftmost, b.keys[b.size - 1]);
+    }
+
+    private static class Builder {
+
+        private final boolean ignoreAnnotations;
+        private final boolean ignoreUnaryAtLiterals;
+        private final List<JavaToken> tokens = new ArrayList<>();
+        private int[] labels = new int[64];
+        private int[] leftmost = new int[64];
+        private long[] keys = new long[64];
+        private int size;
+        private int nextToken;
+        private final List<Long> childKeys = new ArrayList<>();
+
+        Builder(Properties conf) {
+            ignoreAnnotations = Boolean.parseBoolean(conf.getProperty("ignoreAnnotations", "false"));
+            ignoreUnaryAtLiterals = Boolean.parseBoolean(conf.getProperty("ignoreUnaryAtLiterals", "false"));
+        }
+
+        private boolean isIgnored(Node n) {
+            return ignoreAnnotations && n instanceof AnnotationExpr;
+        }
+
+        /**
+         * Returns true if the node is labeled by the equivalence class of its
+         * (last) token.
+         */
+        private static boolean isAbstracted(Node n) {
+            return n instanceof SimpleName
+                    || n instanceof Name
+                    || n instanceof LiteralExpr
+                    || n instanceof ThisExpr
+                    || n instanceof SuperExpr
+                    || n instanceof PrimitiveType;
+        }
+
+        private boolean isSkipped(Node n) {
+            return ignoreUnaryAtLiterals && n instanceof UnaryExpr
+                    && ((UnaryExpr) n).getExpression().isLiteralExpr();
+        }
+
+        private static JavaToken lastToken(Node n) {
+            Optional<TokenRange> range = n.getTokenRange();
+            return range.isPresent() ? range.get().getEnd() : null;
+        }
+
+        /**
+         * Collects the tokens of the abstracted nodes in postorder.
+         */
+        void collect(Node n) {
+            if (isIgnored(n)) {
+                return;
+            }
+            if (isAbstracted(n)) {
+                JavaToken tok = lastToken(n);
+                if (tok != null) {
+                    tokens.add(tok);
+                }
+                return;
+            }
+            for (Node child : n.getChildNodes()) {
+                collect(child);
+            }
+        }
+
+        void build(Node n, int[] codes) {
+            if (isIgnored(n)) {
+                return;
+            }
+            if (isAbstracted(n)) {
+                int first = size;
+                JavaToken tok = lastToken(n);
+                if (tok != null) {
+                    add("$" + codes[nextToken++], first, 0);
+                } else {
+                    add(n.getClass().getSimpleName(), first, 0);
+                }
+                return;
+            }
+            if (isSkipped(n)) {
+                build(((UnaryExpr) n).getExpression(), codes);
+                return;
+            }
+            int first = size;
+            for (Node child : n.getChildNodes()) {
+                build(child, codes);
+            }
+            add(label(n), first, children(first));
+        }
+
+        /**
+         * Returns the number of the children of the node whose subtree starts
+         * at {@code first}, and leaves their keys in {@code childKeys}.
+         */
+        int children(int first) {
+            childKeys.clear();
+            int i = size - 1;
+            while (i >= first) {
+                childKeys.add(0, keys[i]);
+                i = leftmost[i] - 1;
+            }
+            return childKeys.size();
+        }
+
+        private static String label(Node n) {
+            String name = n.getClass().getSimpleName();
+            if (n instanceof BinaryExpr) {
+                return name + ":" + ((BinaryExpr) n).getOperator();
+            }
+            if (n instanceof UnaryExpr) {
+                return name + ":" + ((UnaryExpr) n).getOperator();
+            }
+            if (n instanceof AssignExpr) {
+                return name + ":" + ((AssignExpr) n).getOperator();
+            }
+            if (n instanceof Modifier) {
+                return name + ":" + ((Modifier) n).getKeyword();
+            }
+            return name;
+        }
+
+        void add(String label, int first, int childCount) {
+            if (size == labels.length) {
+                int n = size * 2;
+                labels = Arrays.copyOf(labels, n);
+                leftmost = Arrays.copyOf(leftmost, n);
+                keys = Arrays.copyOf(keys, n);
+            }
+            int id = LABELS.computeIfAbsent(label, s -> NEXT_LABEL.getAndIncrement());
+            long h = id * 0x9E3779B97F4A7C15L;
+            if (childCount > 0) {
+                for (long k : childKeys) {
+                    h = (h ^ k) * 0xC2B2AE3D27D4EB4FL;
+                    h ^= h >>> 29;
+                }
+            }
+            labels[size] = id;
+            leftmost[size] = first;
+            keys[size] = h;
+            size++;
+        }
+    }
+}
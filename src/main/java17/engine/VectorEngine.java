@@ -0,0 +1,139 @@
+package engine;
+
+import java.util.Arrays;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The engine that computes the DP by anti-diagonals with the Vector API. The
+ * cells on an anti-diagonal depend only on the two previous anti-diagonals, so
+ * they are computed several at a time. The anti-diagonal {@code k} holds the
+ * cells {@code (i, k - i)} at index {@code i} and {@code b} is reversed, so
+ * that all operands are contiguous. The arrays are reused for the next pairs
+ * (so the engine is not thread-safe).
+ *
+ * This class needs JDK 17+ and {@code --add-modules jdk.incubator.vector}. It
+ * is compiled by the profile {@code vector} and loaded by reflection by
+ * {@link Engine#vectorEngine()} only if the module is present.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class VectorEngine extends Engine {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    private int[] rb = new int[64];
+    private int[][] diagonals = new int[3][64];
+
+    /**
+     * Makes sure that the arrays are large enough and fills the anti-diagonals
+     * with zeros.
+     */
+    private void prepare(int[] b, int n) {
+        if (rb.length < b.length) {
+            rb = new int[Math.max(b.length, 2 * rb.length)];
+        }
+        for (int j = 0; j < b.length; j++) {
+            rb[j] = b[b.length - 1 - j];
+        }
+        if (diagonals[0].length < n + 1) {
+            int size = Math.max(n + 1, 2 * diagonals[0].length);
+            diagonals = new int[3][size];
+        }
+        for (int[] d : diagonals) {
+            Arrays.fill(d, 0, n + 1, 0);
+        }
+    }
+
+    @Override
+    public int levenshteinDistance(int[] a, int[] b) {
+        int n = a.length;
+        int m = b.length;
+        if (n == 0 || m == 0) {
+            return n + m;
+        }
+        prepare(b, n);
+        int[] rb = this.rb;
+        int[] d2 = diagonals[0];
+        int[] d1 = diagonals[1];
+        int[] d0 = diagonals[2];
+        d1[0] = 1;
+        d1[1] = 1;
+        for (int k = 2; k <= n + m; k++) {
+            if (k <= m) {
+                d0[0] = k;
+            }
+            if (k <= n) {
+                d0[k] = k;
+            }
+            int lo = Math.max(1, k - m);
+            int hi = Math.min(n, k - 1);
+            int off = m - k;
+            int i = lo;
+            for (int bound = hi - SPECIES.length() + 1; i <= bound; i += SPECIES.length()) {
+                IntVector va = IntVector.fromArray(SPECIES, a, i - 1);
+                IntVector vb = IntVector.fromArray(SPECIES, rb, off + i);
+                IntVector diag = IntVector.fromArray(SPECIES, d2, i - 1);
+                IntVector up = IntVector.fromArray(SPECIES, d1, i - 1);
+                IntVector left = IntVector.fromArray(SPECIES, d1, i);
+                VectorMask<Integer> eq = va.compare(VectorOperators.EQ, vb);
+                up.min(left).min(diag).add(1).blend(diag, eq).intoArray(d0, i);
+            }
+            for (; i <= hi; i++) {
+                if (a[i - 1] == rb[off + i]) {
+                    d0[i] = d2[i - 1];
+                } else {
+                    d0[i] = 1 + SequentialEngine.min(d1[i - 1], d1[i], d2[i - 1]);
+                }
+            }
+            int[] p = d2;
+            d2 = d1;
+            d1 = d0;
+            d0 = p;
+        }
+        return d1[n];
+    }
+
+    @Override
+    public int lcsLength(int[] a, int[] b) {
+        int n = a.length;
+        int m = b.length;
+        if (n == 0 || m == 0) {
+            return 0;
+        }
+        prepare(b, n);
+        int[] rb = this.rb;
+        int[] d2 = diagonals[0];
+        int[] d1 = diagonals[1];
+        int[] d0 = diagonals[2];
+        for (int k = 2; k <= n + m; k++) {
+            int lo = Math.max(1, k - m);
+            int hi = Math.min(n, k - 1);
+            int off = m - k;
+            int i = lo;
+            for (int bound = hi - SPECIES.length() + 1; i <= bound; i += SPECIES.length()) {
+                IntVector va = IntVector.fromArray(SPECIES, a, i - 1);
+                IntVector vb = IntVector.fromArray(SPECIES, rb, off + i);
+                IntVector diag = IntVector.fromArray(SPECIES, d2, i - 1);
+                IntVector up = IntVector.fromArray(SPECIES, d1, i - 1);
+                IntVector left = IntVector.fromArray(SPECIES, d1, i);
+                VectorMask<Integer> eq = va.compare(VectorOperators.EQ, vb);
+                up.max(left).blend(diag.add(1), eq).intoArray(d0, i);
+            }
+            for (; i <= hi; i++) {
+                if (a[i - 1] == rb[off + i]) {
+                    d0[i] = d2[i - 1] + 1;
+                } else {
+                    d0[i] = Math.max(d1[i - 1], d1[i]);
+                }
+            }
+            int[] p = d2;
+            d2 = d1;
+            d1 = d0;
+            d0 = p;
+        }
+        return d1[n];
+    }
+}
@@ -0,0 +1,109 @@
+package bench;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadClones;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import engine.Engine;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import nicad.Context;
+import parser.Equivalence;
+import parser.ParseException;
+import parser.Parser;
+import parser.Tokens;
+
+/**
+ * Measures the bytes allocated per pair when the token edit distance is
+ * computed with a fresh parser and engine for each pair, and with a reused
+ * worker context (both with the default engine). The pairs are the clones in
+ * the NiCad XML files.
+ *
+ * Usage: AllocationBenchmark [iterations] [file.xml ...]
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class AllocationBenchmark {
+
+    private static final com.sun.management.ThreadMXBean THREADS
+            = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            files.add(args[i]);
+        }
+        if (files.isEmpty()) {
+            File[] ff = new File("src/test/methods").listFiles((dir, name) -> name.matches("test\\w+\\.xml"));
+            for (File f : ff) {
+                files.add(f.getPath());
+            }
+        }
+        Properties conf = new Properties();
+        conf.setProperty("level", "method");
+        Parser check = Parser.instantiate(conf);
+        List<String[]> pairs = new ArrayList<>();
+        for (String file : files) {
+            for (NiCadClone clone : readFile(file).getClones()) {
+                List<NiCadSource> sources = clone.getSources();
+                if (sources.size() != 2 || sources.get(0).getSourceCode() == null) {
+                    continue;
+                }
+                String[] pair = {sources.get(0).getSourceCode(), sources.get(1).getSourceCode()};
+                try {
+                    check.parse(pair[0], true);
+                    check.parse(pair[1], true);
+                    pairs.add(pair);
+                } catch (ParseException e) {
+                    // only the pairs that can be parsed
+                }
+            }
+        }
+        Equivalence equivalence = new Equivalence(conf);
+        Context ctx = new Context(conf);
+        System.out.printf("%d pairs, %d iterations%n", pairs.size(), iterations);
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? "warm-up" : "measured";
+            long[] fresh = run(pairs, iterations, equivalence, conf, null);
+            long[] reused = run(pairs, iterations, equivalence, conf, ctx);
+            long n = (long) pairs.size() * iterations;
+            System.out.printf("%-8s  fresh: %8d bytes/pair %6.1f us/pair  reused: %8d bytes/pair %6.1f us/pair%n",
+                    label, fresh[0] / n, fresh[1] / 1e3 / n, reused[0] / n, reused[1] / 1e3 / n);
+        }
+    }
+
+    /**
+     * Returns the allocated bytes and the time in nanoseconds.
+     */
+    private static long[] run(List<String[]> pairs, int iterations, Equivalence equivalence, Properties conf, Context ctx) {
+        long sum = 0;
+        long bytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        long start = System.nanoTime();
+        for (int k = 0; k < iterations; k++) {
+            for (String[] pair : pairs) {
+                Parser parser = ctx != null ? ctx.getParser() : Parser.instantiate(conf);
+                Engine engine = ctx != null ? ctx.getEngine() : Engine.instantiate(conf);
+                Tokens tt1 = parser.parse(pair[0], true);
+                Tokens tt2 = parser.parse(pair[1], true);
+                sum += engine.levenshteinDistance(equivalence.encode(tt1.getTokens()), equivalence.encode(tt2.getTokens()));
+            }
+        }
+        long time = System.nanoTime() - start;
+        bytes = THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) - bytes;
+        if (sum < 0) {
+            System.out.println(sum);
+        }
+        return new long[]{bytes, time};
+    }
+
+    private static NiCadClones readFile(String fileName) throws Exception {
+        JAXBContext ctx = JAXBContext.newInstance(NiCadClones.class);
+        Unmarshaller unmarshaller = ctx.createUnmarshaller();
+        return (NiCadClones) unmarshaller.unmarshal(new File(fileName));
+    }
+}
@@ -0,0 +1,94 @@
+package bench;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadClones;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import parser.MethodParser;
+import parser.Parser;
+import parser.StatementParser;
+
+/**
+ * Compares the throughput of splitting to lines at the method level (pretty
+ * printing and parsing again) and at the statement level (single parse). The
+ * statements are the bodies of the methods in the NiCad XML files.
+ *
+ * Usage: LinesBenchmark [iterations] [file.xml ...]
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class LinesBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            files.add(args[i]);
+        }
+        if (files.isEmpty()) {
+            File[] ff = new File("src/test/methods").listFiles((dir, name) -> name.matches("test\\w+\\.xml"));
+            for (File f : ff) {
+                files.add(f.getPath());
+            }
+        }
+        List<String> methods = new ArrayList<>();
+        List<String> bodies = new ArrayList<>();
+        for (String file : files) {
+            for (NiCadClone clone : readFile(file).getClones()) {
+                for (NiCadSource src : clone.getSources()) {
+                    String code = src.getSourceCode();
+                    if (code == null) {
+                        continue;
+                    }
+                    int i = code.indexOf('{');
+                    int j = code.lastIndexOf('}');
+                    if (i >= 0 && j > i) {
+                        methods.add(code);
+                        bodies.add(code.substring(i + 1, j));
+                    }
+                }
+            }
+        }
+        Properties conf = new Properties();
+        Parser mp = new MethodParser(conf);
+        Parser sp = new StatementParser(conf);
+        System.out.printf("%d fragments, %d iterations%n", methods.size(), iterations);
+        for (int round = 0; round < 2; round++) {
+            String label = round == 0 ? "warm-up" : "measured";
+            long mt = run(mp, methods, iterations);
+            long st = run(sp, bodies, iterations);
+            System.out.printf("%-8s  method: %8.0f fragments/s  statement: %8.0f fragments/s%n",
+                    label, rate(methods.size(), iterations, mt), rate(bodies.size(), iterations, st));
+        }
+    }
+
+    private static long run(Parser parser, List<String> fragments, int iterations) {
+        long lines = 0;
+        long start = System.nanoTime();
+        for (int k = 0; k < iterations; k++) {
+            for (String code : fragments) {
+                lines += parser.parseToLines(code, true).size();
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (lines < 0) {
+            System.out.println(lines);
+        }
+        return time;
+    }
+
+    private static double rate(int fragments, int iterations, long nanos) {
+        return (double) fragments * iterations * 1e9 / nanos;
+    }
+
+    private static NiCadClones readFile(String fileName) throws Exception {
+        JAXBContext ctx = JAXBContext.newInstance(NiCadClones.class);
+        Unmarshaller unmarshaller = ctx.createUnmarshaller();
+        return (NiCadClones) unmarshaller.unmarshal(new File(fileName));
+    }
+}
@@ -0,0 +1,151 @@
+package bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import engine.Myers;
+import nicad.Corpus;
+import nicad.MetricTree;
+
+/**
+ * Measures how many distance computations the metric tree saves in the
+ * self-join of a corpus, compared with all pairs. The corpus is derived from
+ * the fragments in the NiCad XML files like the methods of a system: a third
+ * of the fragments are clones (copies of other fragments with a few edits)
+ * and the others are a few slices of the encoded fragments with a part of
+ * their tokens replaced (at least 50 tokens). The time of all pairs (with
+ * the distance bounded by r and the fragments of too different lengths
+ * skipped) is estimated from a sample of the pairs. The tree prunes most of
+ * the distances for the radii up to about 5; the larger radii show where the
+ * pruning fades.
+ *
+ * Usage: MetricTreeBenchmark [fragments] [threads] [file.xml ...]
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class MetricTreeBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (int i = 2; i < args.length; i++) {
+            files.add(args[i]);
+        }
+        if (files.isEmpty()) {
+            File[] ff = new File("src/test/methods").listFiles((dir, name) -> name.matches("test\\w+\\.xml"));
+            for (File f : ff) {
+                files.add(f.getPath());
+            }
+        }
+        Properties conf = new Properties();
+        conf.setProperty("level", "method");
+        List<int[]> pieces = new ArrayList<>();
+        for (String file : files) {
+            Corpus corpus = new Corpus(conf);
+            corpus.read(file);
+            pieces.addAll(Arrays.asList(corpus.encode()));
+        }
+        Random rnd = new Random(46);
+        int[][] fragments = new int[n][];
+        for (int i = 0; i < n; i++) {
+            fragments[i] = i > 0 && rnd.nextInt(3) == 0 ? edit(fragments[rnd.nextInt(i)], 1 + rnd.nextInt(5), rnd)
+                    : fragment(pieces, rnd);
+        }
+        System.out.printf("%d fragments (from %d fragments in %d files), %d threads%n", n, pieces.size(), files.size(), threads);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            MetricTree tree = MetricTree.build(fragments, pool);
+            long built = tree.getComputed();
+            System.out.printf("tree: %d ms, %d distances%n", (System.nanoTime() - start) / 1000000, built);
+            long all = (long) n * (n - 1) / 2;
+            pairTime(fragments, 0, rnd); // warm-up
+            for (int r : new int[]{0, 2, 5, 10, 20}) {
+                double pairTime = pairTime(fragments, r, rnd);
+                long before = tree.getComputed();
+                start = System.nanoTime();
+                int pairs = tree.selfJoin(r, pool).size();
+                long time = System.nanoTime() - start;
+                long computed = tree.getComputed() - before;
+                System.out.printf("r = %2d: %8d pairs, %10d distances (%5.1f%% of %d pairs pruned), %6d ms (all pairs: %.0f ms)%n",
+                        r, pairs, computed, 100.0 * (all - computed) / all, all, time / 1000000,
+                        pairTime * all / threads / 1e6);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static int[] fragment(List<int[]> pieces, Random rnd) {
+        List<Integer> codes = new ArrayList<>();
+        // at least 50 tokens, like the fragments reported by NiCad
+        while (codes.size() < 50) {
+            int[] p = pieces.get(rnd.nextInt(pieces.size()));
+            int from = rnd.nextInt(Math.max(1, p.length / 2));
+            int to = from + rnd.nextInt(Math.max(1, p.length - from));
+            for (int i = from; i < to; i++) {
+                codes.add(p[i]);
+            }
+        }
+        int[] f = codes.stream().mapToInt(Integer::intValue).toArray();
+        // a third of the tokens (e.g. the names and the literals) differ
+        for (int i = 0; i < f.length; i++) {
+            if (rnd.nextInt(3) == 0) {
+                int[] p = pieces.get(rnd.nextInt(pieces.size()));
+                f[i] = p.length > 0 ? p[rnd.nextInt(p.length)] : f[i];
+            }
+        }
+        return f;
+    }
+
+    /**
+     * Returns a copy of the fragment with the given number of random edits.
+     */
+    private static int[] edit(int[] f, int edits, Random rnd) {
+        List<Integer> codes = new ArrayList<>();
+        for (int c : f) {
+            codes.add(c);
+        }
+        for (int e = edits; e > 0 && !codes.isEmpty(); e--) {
+            int i = rnd.nextInt(codes.size());
+            switch (rnd.nextInt(3)) {
+                case 0:
+                    codes.remove(i);
+                    break;
+                case 1:
+                    codes.add(i, codes.get(rnd.nextInt(codes.size())));
+                    break;
+                default:
+                    codes.set(i, codes.get(rnd.nextInt(codes.size())));
+            }
+        }
+        return codes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Returns the mean time (in ns) of a pair of all pairs: the distance up to
+     * r unless the lengths differ by more than r.
+     */
+    private static double pairTime(int[][] fragments, int r, Random rnd) {
+        int samples = 20000;
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int k = 0; k < samples; k++) {
+            int[] f = fragments[rnd.nextInt(fragments.length)];
+            int[] g = fragments[rnd.nextInt(fragments.length)];
+            if (Math.abs(f.length - g.length) <= r) {
+                sum += new Myers(f).distance(g, r);
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (sum < 0) {
+            System.out.println(sum);
+        }
+        return (double) time / samples;
+    }
+}
@@ -0,0 +1,77 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import nicad.NearestIndex;
+
+/**
+ * Measures the time of building the nearest-fragment index and of the top-k
+ * queries over a synthetic corpus. The fragments are sequences of token codes
+ * with a skewed distribution (a few codes, such as separators, are frequent)
+ * and a part of them are mutated copies of others, like the clones in a real
+ * system. The queries are mutated fragments of the corpus. The queries are
+ * run for the exact top-k and for the top-k within the maximum distance.
+ *
+ * Usage: NearestBenchmark [fragments] [queries] [k] [maxDistance]
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class NearestBenchmark {
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        int k = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int maxDistance = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        Random rnd = new Random(45);
+        int[][] fragments = new int[n][];
+        for (int i = 0; i < n; i++) {
+            fragments[i] = i > 0 && rnd.nextInt(4) == 0 ? mutate(fragments[rnd.nextInt(i)], rnd) : fragment(rnd);
+        }
+        long start = System.nanoTime();
+        NearestIndex index = new NearestIndex(fragments, 3);
+        System.out.printf("%d fragments indexed in %d ms%n", n, (System.nanoTime() - start) / 1000000);
+        for (int round = 0; round < 3; round++) {
+            String label = round == 0 ? "warm-up" : round == 1 ? "exact" : "max " + maxDistance;
+            int limit = round < 2 ? Integer.MAX_VALUE - 1 : maxDistance;
+            List<Long> times = new ArrayList<>();
+            for (int t = 0; t < queries; t++) {
+                int[] query = mutate(fragments[rnd.nextInt(n)], rnd);
+                long s = System.nanoTime();
+                index.query(query, k, limit);
+                times.add(System.nanoTime() - s);
+            }
+            long[] tt = times.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(tt);
+            System.out.printf("%-8s  top-%d: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n", label, k,
+                    tt[tt.length / 2] / 1e6, tt[(int) Math.ceil(0.99 * tt.length) - 1] / 1e6, tt[tt.length - 1] / 1e6);
+        }
+        index.report();
+    }
+
+    private static int[] fragment(Random rnd) {
+        int[] f = new int[10 + (int) Math.abs(rnd.nextGaussian() * 60)];
+        for (int j = 0; j < f.length; j++) {
+            f[j] = code(rnd);
+        }
+        return f;
+    }
+
+    /**
+     * Returns a token code; the codes 0-9 (separators and identifiers) make
+     * a half of the tokens.
+     */
+    private static int code(Random rnd) {
+        return rnd.nextBoolean() ? rnd.nextInt(10) : 10 + rnd.nextInt(90);
+    }
+
+    private static int[] mutate(int[] f, Random rnd) {
+        int[] g = f.clone();
+        for (int e = rnd.nextInt(5); e > 0; e--) {
+            g[rnd.nextInt(g.length)] = code(rnd);
+        }
+        return g;
+    }
+}
@@ -0,0 +1,367 @@
+package bench;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import nicad.CloneProcessor;
+import nicad.EditDistance;
+import nicad.ReportReader;
+import nicad.Similarity;
+import parser.ParseException;
+import parser.Parser;
+
+/**
+ * Measures the whole pipeline ({@code EditDistance.process()} and
+ * {@code Similarity.process()}: reading the report, reading and parsing the
+ * fragments, scoring and writing the output) on generated reports of the
+ * given numbers of pairs. The fragments are the fragments of the NiCad XML
+ * files (with a few statements added, so that the copies differ), written
+ * to source files that the reports refer to ({@code source = files}); a half
+ * of the pairs are copies of the same fragment.
+ *
+ * <p>
+ * For each command and report, the pairs per second (of the whole run), the
+ * p50 and p99 of the time per pair and the peak heap (the sum of the peaks of
+ * the heap pools) are written to the results file. If the baseline file
+ * exists (e.g. the results of the previous release on the same machine), the
+ * results are compared with it and the numbers that are worse by more than
+ * the tolerance (in percent) are reported as regressions; the exit status is
+ * then 1. Each measurement runs in a new JVM (with the same options) after a
+ * warm-up of 20000 pairs. The suite needs no network; the reports are generated in a
+ * temporary directory, which is deleted at the end.
+ *
+ * Usage: ThroughputSuite [sizes] [results] [baseline] [tolerance] [file.xml ...]
+ *
+ * (the defaults are 1000,100000,1000000, throughput-results.properties,
+ * throughput-baseline.properties and 10)
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class ThroughputSuite {
+
+    private static final int FRAGMENTS = 10000;
+    private static final int FRAGMENTS_PER_FILE = 100;
+    private static final int WARMUP = 20000;
+    private static final String[] COMMANDS = {"distance", "similarity"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("-run")) {
+            // a measurement in its own JVM: command, directory, warm-up report, report, pairs
+            Path dir = Paths.get(args[2]);
+            run(args[1], dir, args[3], WARMUP);
+            double[] r = run(args[1], dir, args[4], Integer.parseInt(args[5]));
+            System.out.printf("%s %s %s %s%n", r[0], r[1], r[2], r[3]);
+            return;
+        }
+        int[] sizes = Arrays.stream((args.length > 0 ? args[0] : "1000,100000,1000000").split(","))
+                .mapToInt(Integer::parseInt).toArray();
+        String results = args.length > 1 ? args[1] : "throughput-results.properties";
+        String baseline = args.length > 2 ? args[2] : "throughput-baseline.properties";
+        double tolerance = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+        List<String> files = new ArrayList<>();
+        for (int i = 4; i < args.length; i++) {
+            files.add(args[i]);
+        }
+        if (files.isEmpty()) {
+            File[] ff = new File("src/test/methods").listFiles((dir, name) -> name.matches("test\\w+\\.xml"));
+            for (File f : ff) {
+                files.add(f.getPath());
+            }
+        }
+        Path dir = Files.createTempDirectory("throughput");
+        try {
+            Random rnd = new Random(47);
+            List<String> pool = readFragments(files);
+            Fragment[] fragments = writeSources(dir, pool, rnd);
+            System.out.printf("%d fragments (from %d fragments in %d files)%n", fragments.length, pool.size(), files.size());
+            String warmup = writeReport(dir, "warmup.xml", WARMUP, pool.size(), fragments, rnd);
+            Map<String, Double> measured = new TreeMap<>();
+            for (int n : sizes) {
+                String report = writeReport(dir, "pairs-" + n + ".xml", n, pool.size(), fragments, rnd);
+                for (String command : COMMANDS) {
+                    double[] r = fork(command, dir, warmup, report, n);
+                    String key = command + "." + n + ".";
+                    measured.put(key + "pairsPerSecond", r[0]);
+                    measured.put(key + "p50Micros", r[1]);
+                    measured.put(key + "p99Micros", r[2]);
+                    measured.put(key + "peakHeapMB", r[3]);
+                    System.out.printf("%-10s %8d pairs: %10.0f pairs/s, p50 %8.1f us, p99 %8.1f us, peak heap %7.1f MB%n",
+                            command, n, r[0], r[1], r[2], r[3]);
+                }
+                Files.delete(Paths.get(report));
+            }
+            writeResults(measured, results);
+            System.out.printf("results written to %s%n", results);
+            if (!Files.exists(Paths.get(baseline))) {
+                System.out.printf("no baseline %s (copy the results there to compare the next runs with them)%n", baseline);
+                return;
+            }
+            if (compare(measured, baseline, tolerance) > 0) {
+                System.exit(1);
+            }
+        } finally {
+            try (Stream<Path> paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Runs the measurement in a new JVM (with the same class path and JVM
+     * options), so that the JIT and the heap are not shaped by the previous
+     * measurements, and returns its results.
+     */
+    private static double[] fork(String command, Path dir, String warmup, String report, int n) throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        cmd.add("-cp");
+        cmd.add(System.getProperty("java.class.path"));
+        cmd.add(ThroughputSuite.class.getName());
+        cmd.addAll(Arrays.asList("-run", command, dir.toString(), warmup, report, Integer.toString(n)));
+        Process process = new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String last = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                last = line;
+            }
+        }
+        if (process.waitFor() != 0 || last == null) {
+            throw new IllegalStateException(command + " of " + n + " pairs failed");
+        }
+        return Arrays.stream(last.split(" ")).mapToDouble(Double::parseDouble).toArray();
+    }
+
+    /**
+     * Returns the distinct fragments of the XML files that can be parsed.
+     */
+    private static List<String> readFragments(List<String> files) throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("level", "method");
+        Parser check = Parser.instantiate(conf);
+        Set<String> pool = new LinkedHashSet<>();
+        for (String file : files) {
+            for (NiCadClone clone : ReportReader.read(file).getClones()) {
+                for (NiCadSource src : clone.getSources()) {
+                    String code = src.getSourceCode();
+                    if (code == null || pool.contains(code)) {
+                        continue;
+                    }
+                    try {
+                        check.parse(code, true);
+                        pool.add(code);
+                    } catch (ParseException e) {
+                        // only the fragments that can be parsed
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(pool);
+    }
+
+    /**
+     * A fragment in a generated source file.
+     */
+    private static class Fragment {
+
+        final String file;
+        final int startline;
+        final int endline;
+
+        Fragment(String file, int startline, int endline) {
+            this.file = file;
+            this.startline = startline;
+            this.endline = endline;
+        }
+    }
+
+    /**
+     * Writes the source files; the fragment i is a copy of the fragment
+     * i % pool.size() with up to two statements added.
+     */
+    private static Fragment[] writeSources(Path dir, List<String> pool, Random rnd) throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("level", "method");
+        Parser check = Parser.instantiate(conf);
+        Fragment[] fragments = new Fragment[FRAGMENTS];
+        Files.createDirectories(dir.resolve("src"));
+        for (int f = 0; f * FRAGMENTS_PER_FILE < FRAGMENTS; f++) {
+            String file = String.format("src/F%03d.java", f);
+            try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(dir.resolve(file).toFile()), "UTF-8"))) {
+                int line = 1;
+                for (int i = f * FRAGMENTS_PER_FILE; i < Math.min(FRAGMENTS, (f + 1) * FRAGMENTS_PER_FILE); i++) {
+                    String code = vary(pool.get(i % pool.size()), i, rnd);
+                    try {
+                        check.parse(code, true);
+                    } catch (ParseException e) {
+                        code = pool.get(i % pool.size());
+                    }
+                    if (!code.endsWith("\n")) {
+                        code += "\n";
+                    }
+                    int lines = code.split("\n", -1).length - 1;
+                    out.print(code);
+                    fragments[i] = new Fragment(file, line, line + lines - 1);
+                    out.println();
+                    line += lines + 1;
+                }
+            }
+        }
+        return fragments;
+    }
+
+    /**
+     * Adds up to two declarations at the beginning of the body.
+     */
+    private static String vary(String code, int i, Random rnd) {
+        int body = code.indexOf('{');
+        if (body < 0) {
+            return code;
+        }
+        StringBuilder sb = new StringBuilder(code.substring(0, body + 1));
+        for (int k = rnd.nextInt(3); k > 0; k--) {
+            sb.append(String.format("\n        int v%d = %d;", k, i));
+        }
+        return sb.append(code.substring(body + 1)).toString();
+    }
+
+    /**
+     * Writes the report of n pairs to the file and returns its path; a half
+     * of the pairs are copies of the same fragment of the pool.
+     */
+    private static String writeReport(Path dir, String name, int n, int poolSize, Fragment[] fragments, Random rnd) throws Exception {
+        String report = dir.resolve(name).toString();
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(report), "UTF-8"))) {
+            out.println("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>");
+            out.println("<clones>");
+            for (int k = 0; k < n; k++) {
+                int i = rnd.nextInt(fragments.length);
+                int j;
+                if (rnd.nextBoolean()) {
+                    int family = i % poolSize;
+                    j = family + poolSize * rnd.nextInt((fragments.length - family + poolSize - 1) / poolSize);
+                } else {
+                    j = rnd.nextInt(fragments.length);
+                }
+                Fragment f1 = fragments[i];
+                Fragment f2 = fragments[j];
+                out.printf("    <clone nlines=\"%d\" similarity=\"0\">%n", f1.endline - f1.startline + 1);
+                for (Fragment f : new Fragment[]{f1, f2}) {
+                    out.printf("        <source file=\"%s\" startline=\"%d\" endline=\"%d\"/>%n", f.file, f.startline, f.endline);
+                }
+                out.println("    </clone>");
+            }
+            out.println("</clones>");
+        }
+        return report;
+    }
+
+    /**
+     * Runs the command on the report and returns the pairs per second, the
+     * p50 and p99 of the time per pair (in us) and the peak heap (in MB).
+     */
+    private static double[] run(String command, Path dir, String report, int n) throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("level", "method");
+        conf.setProperty("source", "files");
+        conf.setProperty("sourceRoot", dir.toString());
+        conf.setProperty("inputFile", report);
+        CloneProcessor processor = command.equals("distance") ? new EditDistance(conf) : new Similarity(conf);
+        long[][] times = {new long[n]};
+        int[] count = {0};
+        processor.setLatencies(t -> {
+            synchronized (times) {
+                if (count[0] == times[0].length) {
+                    times[0] = Arrays.copyOf(times[0], count[0] * 2);
+                }
+                times[0][count[0]++] = t;
+            }
+        });
+        List<MemoryPoolMXBean> heap = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heap.add(pool);
+            }
+        }
+        System.gc();
+        heap.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long start = System.nanoTime();
+        processor.process();
+        long time = System.nanoTime() - start;
+        long peak = 0;
+        for (MemoryPoolMXBean pool : heap) {
+            peak += pool.getPeakUsage().getUsed();
+        }
+        long[] tt = Arrays.copyOf(times[0], count[0]);
+        Arrays.sort(tt);
+        double p50 = tt.length > 0 ? tt[tt.length / 2] / 1e3 : 0;
+        double p99 = tt.length > 0 ? tt[(int) Math.ceil(0.99 * tt.length) - 1] / 1e3 : 0;
+        String output = report.substring(0, report.lastIndexOf(".xml")) + "-" + command + ".xml";
+        Files.deleteIfExists(Paths.get(output));
+        return new double[]{n * 1e9 / time, p50, p99, peak / (1024.0 * 1024.0)};
+    }
+
+    private static void writeResults(Map<String, Double> measured, String fileName) throws Exception {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8"))) {
+            out.printf("# %s %s, %s %s, %d CPUs, max heap %d MB%n", System.getProperty("java.vm.name"),
+                    System.getProperty("java.version"), System.getProperty("os.name"), System.getProperty("os.arch"),
+                    Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / (1024 * 1024));
+            for (Map.Entry<String, Double> e : measured.entrySet()) {
+                out.printf("%s=%.1f%n", e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    /**
+     * Compares the results with the baseline and returns the number of
+     * regressions. The pairs per second are worse if they are lower, the
+     * other numbers if they are higher.
+     */
+    private static int compare(Map<String, Double> measured, String baseline, double tolerance) throws Exception {
+        Properties base = new Properties();
+        try (FileReader in = new FileReader(baseline)) {
+            base.load(in);
+        }
+        System.out.printf("compared with %s (tolerance %.1f%%):%n", baseline, tolerance);
+        int regressions = 0;
+        for (Map.Entry<String, Double> e : measured.entrySet()) {
+            String b = base.getProperty(e.getKey());
+            if (b == null) {
+                continue;
+            }
+            double was = Double.parseDouble(b);
+            double now = e.getValue();
+            double change = was == 0 ? 0 : 100.0 * (now - was) / was;
+            boolean worse = e.getKey().endsWith("pairsPerSecond") ? -change > tolerance : change > tolerance;
+            if (worse) {
+                regressions++;
+            }
+            System.out.printf("%-36s %12.1f %12.1f %+7.1f%%%s%n", e.getKey(), was, now, change, worse ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d regressions%n", regressions);
+        return regressions;
+    }
+}
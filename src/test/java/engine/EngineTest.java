@@ -0,0 +1,264 @@
+package engine;
+
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class EngineTest {
+
+    private final Random random = new Random(42);
+
+    private int[] randomSequence(int length, int alphabet) {
+        int[] s = new int[length];
+        for (int i = 0; i < length; i++) {
+            s[i] = random.nextInt(alphabet);
+        }
+        return s;
+    }
+
+    private int[] mutate(int[] s, int edits, int alphabet) {
+        int[] p = s.clone();
+        for (int i = 0; i < edits && p.length > 0; i++) {
+            p[random.nextInt(p.length)] = random.nextInt(alphabet);
+        }
+        return p;
+    }
+
+    private static int levenshteinDistance(int[] a, int[] b) {
+        int[][] d = new int[a.length + 1][b.length + 1];
+        for (int i = 0; i <= a.length; i++) {
+            for (int j = 0; j <= b.length; j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    int c = a[i - 1] == b[j - 1] ? 0 : 1;
+                    d[i][j] = Math.min(d[i - 1][j - 1] + c, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                }
+            }
+        }
+        return d[a.length][b.length];
+    }
+
+    private static int LCS(int[] a, int[] b) {
+        int[][] d = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                if (a[i - 1] == b[j - 1]) {
+                    d[i][j] = d[i - 1][j - 1] + 1;
+                } else {
+                    d[i][j] = Math.max(d[i - 1][j], d[i][j - 1]);
+                }
+            }
+        }
+        return d[a.length][b.length];
+    }
+
+    /**
+     * Applies the edits to {@code a} and checks that the result is {@code b}.
+     */
+    private void checkEdits(int[] a, int[] b, List<Edit> edits) {
+        int i = 0;
+        int j = 0;
+        for (Edit e : edits) {
+            switch (e.getType()) {
+                case INSERT:
+                    for (; j < e.getIndex2(); i++, j++) {
+                        assertEquals(a[i], b[j]);
+                    }
+                    j++;
+                    break;
+                case DELETE:
+                    for (; i < e.getIndex1(); i++, j++) {
+                        assertEquals(a[i], b[j]);
+                    }
+                    i++;
+                    break;
+                case SUBSTITUTE:
+                    for (; i < e.getIndex1(); i++, j++) {
+                        assertEquals(a[i], b[j]);
+                    }
+                    assertEquals(e.getIndex2(), j);
+                    i++;
+                    j++;
+                    break;
+            }
+        }
+        assertEquals(a.length - i, b.length - j);
+        for (; i < a.length; i++, j++) {
+            assertEquals(a[i], b[j]);
+        }
+    }
+
+    @Test
+    public void levenshteinAlignment() {
+        for (int t = 0; t < 200; t++) {
+            int[] a = randomSequence(random.nextInt(60), 5);
+            int[] b = t % 2 == 0 ? mutate(a, 3, 5) : randomSequence(random.nextInt(60), 5);
+            List<Edit> edits = Hirschberg.levenshteinAlignment(a, b);
+            assertEquals(levenshteinDistance(a, b), edits.size());
+            checkEdits(a, b, edits);
+        }
+    }
+
+    @Test
+    public void lcsAlignment() {
+        for (int t = 0; t < 200; t++) {
+            int[] a = randomSequence(random.nextInt(60), 5);
+            int[] b = randomSequence(random.nextInt(60), 5);
+            List<Edit> edits = Hirschberg.lcsAlignment(a, b);
+            int lcs = LCS(a, b);
+            assertEquals(a.length + b.length - 2 * lcs, edits.size());
+            checkEdits(a, b, edits);
+        }
+    }
+
+    @Test
+    public void engines() throws Exception {
+        Engine[] engines = {new SequentialEngine(), Engine.vectorEngine(), new WavefrontEngine(1), new WavefrontEngine(7), new WavefrontEngine(64),
+            new BandedEngine(), new AutoEngine(new SequentialEngine(), new WavefrontEngine(7), 2000, new AutoEngine.Profile(16, 50)),
+            new AutoEngine(new SequentialEngine(), new WavefrontEngine(7), Long.MAX_VALUE, new AutoEngine.Profile(0, 1))};
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (int t = 0; t < 300; t++) {
+                int[] a = randomSequence(random.nextInt(100), 5);
+                int[] b = t % 2 == 0 ? mutate(a, 5, 5) : randomSequence(random.nextInt(100), 5);
+                int d = levenshteinDistance(a, b);
+                int lcs = LCS(a, b);
+                for (Engine e : engines) {
+                    assertEquals(d, e.levenshteinDistance(a, b));
+                    assertEquals(lcs, e.lcsLength(a, b));
+                    assertEquals(d, (int) pool.submit(() -> e.levenshteinDistance(a, b)).get());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void myers() {
+        Myers reused = new Myers(new int[0]);
+        for (int t = 0; t < 300; t++) {
+            int[] a = randomSequence(random.nextInt(t < 150 ? 70 : 300), 6);
+            int[] b = t % 2 == 0 ? mutate(a, random.nextInt(20), 8) : randomSequence(random.nextInt(300), 8);
+            int d = levenshteinDistance(a, b);
+            Myers myers = new Myers(a);
+            assertEquals(d, myers.distance(b));
+            int limit = random.nextInt(d + 5);
+            int bounded = myers.distance(b, limit);
+            assertTrue(d <= limit ? bounded == d : bounded > limit);
+            assertEquals(LCS(a, b), myers.lcsLength(b));
+            // the pattern and the text in the middle of longer arrays
+            int[] pa = pad(a);
+            int[] pb = pad(b);
+            reused.reset(pa, 2, 2 + a.length);
+            assertEquals(d, reused.distance(pb, 2, 2 + b.length, Integer.MAX_VALUE - 1));
+            assertEquals(LCS(a, b), reused.lcsLength(pb, 2, 2 + b.length));
+        }
+    }
+
+    /**
+     * Returns the sequence with two elements before and three after it (which
+     * are not in the sequences).
+     */
+    private static int[] pad(int[] x) {
+        int[] p = new int[x.length + 5];
+        Arrays.fill(p, -1);
+        System.arraycopy(x, 0, p, 2, x.length);
+        return p;
+    }
+
+    @Test
+    public void autoEngine() {
+        AutoEngine auto = new AutoEngine(new SequentialEngine(), new WavefrontEngine(16), 40000, new AutoEngine.Profile(20, 20));
+        for (int t = 0; t < 400; t++) {
+            // tiny, near-identical, different and huge pairs
+            int length = t % 4 == 0 ? random.nextInt(20) : t % 4 == 3 ? 200 + random.nextInt(100) : 20 + random.nextInt(150);
+            int[] a = randomSequence(length, 6);
+            int[] b = t % 4 == 1 ? mutate(a, random.nextInt(4), 6) : randomSequence(length + random.nextInt(5), 6);
+            assertEquals(levenshteinDistance(a, b), auto.levenshteinDistance(a, b));
+            assertEquals(LCS(a, b), auto.lcsLength(b, a));
+        }
+        for (AutoEngine.Choice ch : AutoEngine.Choice.values()) {
+            assertTrue(ch.toString(), auto.getPairs(ch) > 0);
+        }
+    }
+
+    @Test
+    public void engineProfile() throws Exception {
+        Path file = Files.createTempFile("engine", ".properties");
+        try {
+            Files.write(file, Arrays.asList("plainMax=24", "wordCost=3.5"));
+            Properties conf = new Properties();
+            conf.setProperty("engineProfile", file.toString());
+            AutoEngine.Profile profile = AutoEngine.profile(conf, new SequentialEngine());
+            assertEquals(24, profile.getPlainMax());
+            assertEquals(3.5, profile.getWordCost(), 0.0);
+            assertSame(AutoEngine.SEQUENTIAL_PROFILE, AutoEngine.profile(new Properties(), new SequentialEngine()));
+            for (String invalid : new String[]{"plainMax=-1\nwordCost=3", "plainMax=8\nwordCost=0.5", "plainMax=8"}) {
+                Path bad = Files.createTempFile("engine", ".properties");
+                try {
+                    Files.write(bad, invalid.getBytes());
+                    conf.setProperty("engineProfile", bad.toString());
+                    AutoEngine.profile(conf, new SequentialEngine());
+                    fail(invalid);
+                } catch (AssertionError e) {
+                    assertTrue(e.getMessage(), e.getMessage().startsWith("invalid"));
+                } finally {
+                    Files.delete(bad);
+                }
+            }
+            // the probe is written to the file
+            Files.delete(file);
+            conf.setProperty("engineProfile", file.toString() + ".probe");
+            profile = AutoEngine.profile(conf, new SequentialEngine());
+            assertTrue(profile.getPlainMax() >= 0 && profile.getWordCost() >= 1);
+            Properties written = new Properties();
+            try (Reader in = Files.newBufferedReader(Paths.get(file + ".probe"))) {
+                written.load(in);
+            }
+            assertEquals(Integer.toString(profile.getPlainMax()), written.getProperty("plainMax"));
+            Files.delete(Paths.get(file + ".probe"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void vectorEngine() {
+        // the Vector API is used only with add-modules jdk.incubator.vector
+        Engine e = Engine.vectorEngine();
+        int[] a = randomSequence(1000, 3);
+        int[] b = mutate(a, 100, 3);
+        assertEquals(levenshteinDistance(a, b), e.levenshteinDistance(a, b));
+        assertEquals(LCS(a, b), e.lcsLength(a, b));
+    }
+
+    @Test
+    public void treeDistance() {
+        // f(d(a, c(b)), e) and f(c(d(a, b)), e)
+        int a = 0, b = 1, c = 2, d = 3, e = 4, f = 5;
+        int[] labels1 = {a, b, c, d, e, f};
+        int[] leftmost1 = {0, 1, 1, 0, 4, 0};
+        int[] keyroots1 = {2, 4, 5};
+        int[] labels2 = {a, b, d, c, e, f};
+        int[] leftmost2 = {0, 1, 0, 0, 4, 0};
+        int[] keyroots2 = {1, 4, 5};
+        assertEquals(2, ZhangShasha.distance(labels1, leftmost1, keyroots1, labels2, leftmost2, keyroots2));
+        assertEquals(0, ZhangShasha.distance(labels1, leftmost1, keyroots1, labels1, leftmost1, keyroots1));
+        assertTrue(ZhangShasha.lowerBound(labels1, labels2) <= 2);
+    }
+}
@@ -1,121 +1,775 @@
-package nicad;
-
-import edu.tarleton.drdup2.nicad.NiCadClone;
-import edu.tarleton.drdup2.nicad.NiCadClones;
-import java.io.File;
-import java.util.List;
-import java.util.Properties;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-import org.junit.After;
-import org.junit.Before;
-import org.junit.Test;
-import static org.junit.Assert.*;
-
-/**
- * JUnit tests.
- *
- * @author Zdenek Tronicek, tronicek@tarleton.edu
- */
-public class EditDistanceTest {
-
-    @Before
-    public void setUp() {
-    }
-
-    @After
-    public void tearDown() {
-    }
-
-    private void test(Properties conf, String input) throws Exception {
-        conf.setProperty("inputFile", "src/test/methods/" + input);
-        conf.setProperty("rename", "blind");
-        conf.setProperty("level", "method");
-        EditDistance ed = new EditDistance(conf);
-        ed.process();
-        String inFile = conf.getProperty("inputFile");
-        int d = inFile.lastIndexOf(".xml");
-        String outFile = inFile.substring(0, d) + "-distance.xml";
-        NiCadClones cls = readFile(inFile);
-        NiCadClones cls2 = readFile(outFile);
-        List<NiCadClone> clones = cls.getClones();
-        List<NiCadClone> clones2 = cls2.getClones();
-        for (int i = 0; i < clones.size(); i++) {
-            NiCadClone cl = clones.get(i);
-            NiCadClone cl2 = clones2.get(i);
-            int sim = cl.getSimilarity();
-            int dist = cl2.getDistance();
-            assertEquals(100 - sim, dist);
-        }
-    }
-
-    private void test(String input) throws Exception {
-        Properties conf = new Properties();
-        test(conf, input);
-    }
-
-    private NiCadClones readFile(String fileName) throws Exception {
-        JAXBContext ctx = JAXBContext.newInstance(NiCadClones.class);
-        Unmarshaller unmarshaller = ctx.createUnmarshaller();
-        return (NiCadClones) unmarshaller.unmarshal(new File(fileName));
-    }
-
-    @Test
-    public void test1() throws Exception {
-        test("test1.xml");
-    }
-
-    @Test
-    public void test2a() throws Exception {
-        test("test2a.xml");
-    }
-
-    @Test
-    public void test2b() throws Exception {
-        test("test2b.xml");
-    }
-
-    @Test
-    public void test3() throws Exception {
-        Properties conf = new Properties();
-        conf.setProperty("ignoreUnaryAtLiterals", "true");
-        test(conf, "test3.xml");
-    }
-
-    @Test
-    public void test4() throws Exception {
-        test("test4.xml");
-    }
-
-    @Test
-    public void test5() throws Exception {
-        Properties conf = new Properties();
-        conf.setProperty("ignoreParentheses", "true");
-        test(conf, "test5.xml");
-    }
-
-    @Test
-    public void test6() throws Exception {
-        test("test6.xml");
-    }
-
-    @Test
-    public void test7() throws Exception {
-        test("test7.xml");
-    }
-
-    @Test
-    public void test8() throws Exception {
-        test("test8.xml");
-    }
-
-    @Test
-    public void test9() throws Exception {
-        test("test9.xml");
-    }
-
-    @Test
-    public void test10() throws Exception {
-        test("test10.xml");
-    }
-}
+package nicad;
+
+import edu.tarleton.drdup2.nicad.NiCadClone;
+import edu.tarleton.drdup2.nicad.NiCadClones;
+import edu.tarleton.drdup2.nicad.NiCadSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class EditDistanceTest {
+
+    @Before
+    public void setUp() {
+    }
+
+    @After
+    public void tearDown() {
+    }
+
+    private void test(Properties conf, String input) throws Exception {
+        conf.setProperty("inputFile", "src/test/methods/" + input);
+        if (conf.getProperty("rename") == null) {
+            conf.setProperty("rename", "blind");
+        }
+        conf.setProperty("level", "method");
+        EditDistance ed = new EditDistance(conf);
+        ed.process();
+        String inFile = conf.getProperty("inputFile");
+        int d = inFile.lastIndexOf(".xml");
+        String outFile = inFile.substring(0, d) + "-distance.xml";
+        NiCadClones cls = readFile(inFile);
+        NiCadClones cls2 = readFile(outFile);
+        List<NiCadClone> clones = cls.getClones();
+        List<NiCadClone> clones2 = cls2.getClones();
+        for (int i = 0; i < clones.size(); i++) {
+            NiCadClone cl = clones.get(i);
+            NiCadClone cl2 = clones2.get(i);
+            int sim = cl.getSimilarity();
+            int dist = cl2.getDistance();
+            assertEquals(100 - sim, dist);
+        }
+    }
+
+    private void test(String input) throws Exception {
+        Properties conf = new Properties();
+        test(conf, input);
+    }
+
+    private NiCadClones readFile(String fileName) throws Exception {
+        return ReportReader.read(fileName);
+    }
+
+    @Test
+    public void test1() throws Exception {
+        test("test1.xml");
+    }
+
+    @Test
+    public void test2a() throws Exception {
+        test("test2a.xml");
+    }
+
+    @Test
+    public void test2b() throws Exception {
+        test("test2b.xml");
+    }
+
+    @Test
+    public void test3() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("ignoreUnaryAtLiterals", "true");
+        test(conf, "test3.xml");
+    }
+
+    @Test
+    public void test4() throws Exception {
+        test("test4.xml");
+    }
+
+    @Test
+    public void test5() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("ignoreParentheses", "true");
+        test(conf, "test5.xml");
+    }
+
+    @Test
+    public void test6() throws Exception {
+        test("test6.xml");
+    }
+
+    @Test
+    public void test7() throws Exception {
+        test("test7.xml");
+    }
+
+    @Test
+    public void test8() throws Exception {
+        test("test8.xml");
+    }
+
+    @Test
+    public void test9() throws Exception {
+        test("test9.xml");
+    }
+
+    @Test
+    public void test10() throws Exception {
+        test("test10.xml");
+    }
+
+    @Test
+    public void test11() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("source", "files");
+        conf.setProperty("sourceRoot", "src/test/sources");
+        test(conf, "test11.xml");
+    }
+
+    @Test
+    public void test12() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("rename", "consistent");
+        test(conf, "test12.xml");
+    }
+
+    @Test
+    public void test13() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("inputFile", "src/test/methods/test13.xml");
+        conf.setProperty("rename", "blind");
+        conf.setProperty("level", "method");
+        EditDistance ed = new EditDistance(conf);
+        ed.process();
+        List<String> lines = Files.readAllLines(Paths.get("src/test/methods/test13-distance.xml"), StandardCharsets.UTF_8);
+        assertTrue(lines.contains("    <clone nlines=\"3\" distance=\"0\" fallback=\"lexer\">"));
+        assertTrue(lines.contains("    <clone nlines=\"3\" distance=\"2147483647\" failure=\"cloneClass\">"));
+        assertTrue(lines.contains("    <clone nlines=\"3\" distance=\"2147483647\" failure=\"parse\">"));
+    }
+
+    @Test
+    public void test14() throws Exception {
+        Path dir = Files.createTempDirectory("resume");
+        Path input = dir.resolve("test14.xml");
+        Path journal = dir.resolve("test14-distance.xml.journal");
+        try {
+            Files.copy(Paths.get("src/test/methods/test14.xml"), input);
+            Properties conf = new Properties();
+            conf.setProperty("inputFile", input.toString());
+            conf.setProperty("rename", "consistent");
+            conf.setProperty("level", "method");
+            conf.setProperty("checkpointInterval", "1");
+            conf.setProperty("resume", "true");
+            // the first clone is done (with a distance that is not computed),
+            // the second line is incomplete
+            String stamp = "stamp\t" + Long.toHexString(Journal.stamp(input.toString(), conf)) + "\n";
+            Files.write(journal, (stamp + "0\t7\t-\tok\n1\t0\t").getBytes(StandardCharsets.UTF_8));
+            new EditDistance(conf).process();
+            assertFalse(Files.exists(journal));
+            List<NiCadClone> clones = readFile(dir.resolve("test14-distance.xml").toString()).getClones();
+            assertEquals(7, (int) clones.get(0).getDistance());
+            assertEquals(1, (int) clones.get(1).getDistance());
+            assertEquals(2, (int) clones.get(2).getDistance());
+            // the journal of another configuration is rejected
+            Files.write(journal, (stamp + "0\t7\t-\tok\n").getBytes(StandardCharsets.UTF_8));
+            conf.setProperty("rename", "blind");
+            try {
+                new EditDistance(conf).process();
+                fail();
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(journal.toString()));
+            }
+        } finally {
+            for (Path p : new Path[]{input, journal, dir.resolve("test14-distance.xml"), dir}) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Test
+    public void test15() throws Exception {
+        for (String shard : new String[]{"2", "0", "1"}) {
+            Properties conf = new Properties();
+            conf.setProperty("inputFile", "src/test/methods/test7.xml");
+            conf.setProperty("rename", "blind");
+            conf.setProperty("level", "method");
+            conf.setProperty("shards", "3");
+            conf.setProperty("shard", shard);
+            conf.setProperty("shardBy", "hash");
+            EditDistance ed = new EditDistance(conf);
+            ed.process();
+        }
+        Properties conf = new Properties();
+        conf.setProperty("shards", "3");
+        conf.setProperty("shard", "merge");
+        conf.setProperty("shardBy", "hash");
+        test(conf, "test7.xml");
+        for (int i = 0; i < 3; i++) {
+            Files.delete(Paths.get("src/test/methods/test7-distance.xml.shard-" + i + "-of-3"));
+        }
+        // a single shard has nothing to merge
+        conf.setProperty("shards", "1");
+        try {
+            new EditDistance(conf);
+            fail();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("invalid shard"));
+        }
+    }
+
+    @Test
+    public void test16() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("threads", "4");
+        conf.setProperty("wavefrontThreshold", "100");
+        conf.setProperty("tileSize", "8");
+        test(conf, "test7.xml");
+    }
+
+    @Test
+    public void test17() throws Exception {
+        for (String input : new String[]{"test1.xml", "test7.xml", "test13.xml"}) {
+            String fileName = "src/test/methods/" + input;
+            SourceBodies bodies = new SourceBodies();
+            List<NiCadClone> lazy = ReportReader.readLazy(fileName, bodies).getClones();
+            List<NiCadClone> clones = readFile(fileName).getClones();
+            assertEquals(clones.size(), lazy.size());
+            for (int i = 0; i < clones.size(); i++) {
+                List<NiCadSource> sources = clones.get(i).getSources();
+                List<NiCadSource> sources2 = lazy.get(i).getSources();
+                for (int j = 0; j < sources.size(); j++) {
+                    String code = sources2.get(j).getSourceCode();
+                    assertTrue(code == null || code.isEmpty());
+                    assertEquals(sources.get(j).getSourceCode(), bodies.getCode(sources2.get(j)));
+                }
+            }
+        }
+        Properties conf = new Properties();
+        conf.setProperty("lazySources", "true");
+        test(conf, "test7.xml");
+    }
+
+    @Test
+    public void test18() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("inputFile", "src/test/methods/test7.xml");
+        conf.setProperty("rename", "blind");
+        conf.setProperty("level", "method");
+        conf.setProperty("minLines", "5");
+        conf.setProperty("excludeFiles", ".*/Times\\.java");
+        EditDistance ed = new EditDistance(conf);
+        ed.process();
+        List<NiCadClone> clones = readFile("src/test/methods/test7-distance.xml").getClones();
+        int expected = 0;
+        for (NiCadClone clone : readFile("src/test/methods/test7.xml").getClones()) {
+            boolean times = false;
+            for (NiCadSource src : clone.getSources()) {
+                times |= src.getFile().endsWith("/Times.java");
+            }
+            if (clone.getNlines() >= 5 && !times) {
+                expected++;
+            }
+        }
+        assertEquals(expected, clones.size());
+        for (NiCadClone clone : clones) {
+            assertTrue(clone.getNlines() >= 5);
+            for (NiCadSource src : clone.getSources()) {
+                assertFalse(src.getFile().endsWith("/Times.java"));
+            }
+        }
+    }
+
+    @Test
+    public void test19() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("dedup", "true");
+        conf.setProperty("dedupCacheSize", "1");
+        test(conf, "test7.xml");
+        conf.setProperty("rename", "consistent");
+        test(conf, "test12.xml");
+    }
+
+    @Test
+    public void test20() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("ignoreParentheses", "true");
+        conf.setProperty("sweep", "ignoreParentheses,treatNullAsLiteral");
+        test(conf, "test5.xml");
+        List<String> lines = Files.readAllLines(Paths.get("src/test/methods/test5-distance.xml"), StandardCharsets.UTF_8);
+        int variants = 0;
+        for (String line : lines) {
+            if (line.trim().startsWith("<variant ignoreParentheses=")) {
+                variants++;
+            }
+        }
+        assertEquals(4, variants);
+    }
+
+    @Test
+    public void test21() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("sketch", "filter");
+        conf.setProperty("sketchThreshold", "0");
+        test(conf, "test7.xml");
+        conf.setProperty("sketch", "estimate");
+        EditDistance ed = new EditDistance(conf);
+        ed.process();
+        List<String> lines = Files.readAllLines(Paths.get("src/test/methods/test7-distance.xml"), StandardCharsets.UTF_8);
+        int clones = 0;
+        int estimated = 0;
+        for (String line : lines) {
+            if (line.contains("<clone ")) {
+                clones++;
+                if (line.contains(" estimated=\"sketch\"")) {
+                    estimated++;
+                }
+            }
+        }
+        assertEquals(3, clones);
+        assertEquals(clones, estimated);
+        // the exact results are compared with the estimates
+        conf.setProperty("sketch", "compare");
+        test(conf, "test7.xml");
+        // the sketches of identical and of unrelated fragments
+        Random rnd = new Random(21);
+        int[] a = new int[200];
+        int[] b = new int[200];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = rnd.nextInt(100);
+            b[i] = rnd.nextInt(100);
+        }
+        assertEquals(1.0, Sketch.of(a, 3).similarity(Sketch.of(a.clone(), 3)), 0.0);
+        assertEquals(0.0, Sketch.of(a, 3).similarity(Sketch.of(b, 3)), 0.3);
+        // the distribution of the error: 2, 0, -3, 0
+        Sketching sketching = Sketching.of(conf);
+        assertNull(sketching.getErrorSummary());
+        sketching.recordExact(5, 3);
+        sketching.recordExact(3, 3);
+        sketching.recordExact(1, 4);
+        sketching.recordExact(10, 10);
+        assertEquals(String.format("mean %.2f, mean |error| %.2f, p50 0, p90 3, p99 3, max 3", -0.25, 1.25),
+                sketching.getErrorSummary());
+        // the variants of the sweep cannot be estimated
+        conf.setProperty("sweep", "ignoreParentheses");
+        try {
+            new EditDistance(conf);
+            fail();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("invalid sketch"));
+        }
+    }
+
+    @Test
+    public void test22() throws Exception {
+        Random rnd = new Random(22);
+        int[][] fragments = new int[300][];
+        for (int i = 0; i < fragments.length; i++) {
+            if (i > 0 && rnd.nextInt(3) == 0) {
+                // a mutated copy of an earlier fragment
+                int[] f = fragments[rnd.nextInt(i)].clone();
+                for (int e = rnd.nextInt(4); e > 0 && f.length > 0; e--) {
+                    f[rnd.nextInt(f.length)] = rnd.nextInt(8);
+                }
+                fragments[i] = f;
+            } else {
+                fragments[i] = new int[rnd.nextInt(40)];
+                for (int j = 0; j < fragments[i].length; j++) {
+                    fragments[i][j] = rnd.nextInt(8);
+                }
+            }
+        }
+        NearestIndex index = new NearestIndex(fragments, 3);
+        engine.Engine engine = new engine.SequentialEngine();
+        for (int t = 0; t < 50; t++) {
+            int[] query = fragments[rnd.nextInt(fragments.length)].clone();
+            if (query.length > 0) {
+                query[rnd.nextInt(query.length)] = rnd.nextInt(8);
+            }
+            int k = 1 + rnd.nextInt(10);
+            List<NearestIndex.Neighbor> result = index.query(query, k);
+            long[] expected = new long[fragments.length];
+            for (int id = 0; id < fragments.length; id++) {
+                expected[id] = (long) engine.levenshteinDistance(query, fragments[id]) << 32 | id;
+            }
+            Arrays.sort(expected);
+            assertEquals(k, result.size());
+            for (int i = 0; i < k; i++) {
+                assertEquals((int) expected[i], result.get(i).getId());
+                assertEquals((int) (expected[i] >>> 32), result.get(i).getDistance());
+            }
+        }
+    }
+
+    @Test
+    public void test23() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("level", "method");
+        Nearest nearest = new Nearest(conf);
+        nearest.build("src/test/methods/test7.xml");
+        NiCadSource src = readFile("src/test/methods/test7.xml").getClones().get(0).getSources().get(0);
+        List<NearestIndex.Neighbor> result = nearest.query(src.getSourceCode(), 2);
+        assertEquals(2, result.size());
+        assertEquals(0, result.get(0).getDistance());
+        NiCadSource found = nearest.getSource(result.get(0).getId());
+        assertEquals(src.getFile(), found.getFile());
+        assertEquals(src.getStartline(), found.getStartline());
+        assertTrue(result.get(1).getDistance() > 0);
+    }
+
+    @Test
+    public void test24() throws Exception {
+        Random rnd = new Random(24);
+        int[][] fragments = new int[500][];
+        for (int i = 0; i < fragments.length; i++) {
+            if (i > 0 && rnd.nextInt(2) == 0) {
+                int[] f = fragments[rnd.nextInt(i)].clone();
+                for (int e = rnd.nextInt(6); e > 0 && f.length > 0; e--) {
+                    f[rnd.nextInt(f.length)] = rnd.nextInt(6);
+                }
+                fragments[i] = f;
+            } else {
+                fragments[i] = new int[rnd.nextInt(50)];
+                for (int j = 0; j < fragments[i].length; j++) {
+                    fragments[i][j] = rnd.nextInt(6);
+                }
+            }
+        }
+        engine.Engine engine = new engine.SequentialEngine();
+        int[][] d = new int[fragments.length][fragments.length];
+        for (int i = 0; i < fragments.length; i++) {
+            for (int j = 0; j < fragments.length; j++) {
+                d[i][j] = engine.levenshteinDistance(fragments[i], fragments[j]);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(3);
+        Path file = Files.createTempFile("tree", ".bin");
+        try {
+            MetricTree built = MetricTree.build(fragments, pool);
+            built.write(file);
+            MetricTree read = MetricTree.read(file);
+            for (MetricTree tree : Arrays.asList(built, read)) {
+                for (int r : new int[]{0, 3, 8}) {
+                    for (int t = 0; t < 20; t++) {
+                        int q = rnd.nextInt(fragments.length);
+                        Set<Integer> expected = new HashSet<>();
+                        for (int j = 0; j < fragments.length; j++) {
+                            if (d[q][j] <= r) {
+                                expected.add(j);
+                            }
+                        }
+                        Set<Integer> found = new HashSet<>();
+                        for (NearestIndex.Neighbor n : tree.range(fragments[q], r)) {
+                            assertEquals(d[q][n.getId()], n.getDistance());
+                            found.add(n.getId());
+                        }
+                        assertEquals(expected, found);
+                    }
+                    int pairs = 0;
+                    for (int[] p : tree.selfJoin(r, pool)) {
+                        assertTrue(p[0] < p[1]);
+                        assertEquals(d[p[0]][p[1]], p[2]);
+                        pairs++;
+                    }
+                    int expected = 0;
+                    for (int i = 0; i < fragments.length; i++) {
+                        for (int j = i + 1; j < fragments.length; j++) {
+                            expected += d[i][j] <= r ? 1 : 0;
+                        }
+                    }
+                    assertEquals(expected, pairs);
+                }
+            }
+        } finally {
+            pool.shutdown();
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void test25() throws Exception {
+        Path file = Files.createTempFile("tree", ".bin");
+        Path output = Paths.get("src/test/methods/test7-join.xml");
+        try {
+            Files.delete(file);
+            Properties conf = new Properties();
+            conf.setProperty("inputFile", "src/test/methods/test7.xml");
+            conf.setProperty("level", "method");
+            conf.setProperty("joinDistance", "100");
+            conf.setProperty("metricTree", file.toString());
+            new Join(conf).process();
+            assertTrue(Files.exists(file));
+            List<String> first = Files.readAllLines(output, StandardCharsets.UTF_8);
+            // all 6 fragments are within 100 tokens of each other
+            assertEquals(15, first.stream().filter(line -> line.contains("<clone ")).count());
+            new Join(conf).process();
+            assertEquals(first, Files.readAllLines(output, StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    @Test
+    public void test26() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("inputFile", "src/test/methods/test13.xml");
+        conf.setProperty("level", "method");
+        conf.setProperty("threads", "2");
+        EditDistance ed = new EditDistance(conf);
+        ConcurrentLinkedQueue<Long> times = new ConcurrentLinkedQueue<>();
+        ed.setLatencies(times::add);
+        ed.process();
+        // one time per clone, including the clones that fail
+        assertEquals(readFile("src/test/methods/test13.xml").getClones().size(), times.size());
+        assertTrue(times.stream().allMatch(t -> t >= 0));
+    }
+
+    @Test
+    public void test27() throws Exception {
+        // equal distances must not make the tree a chain
+        int n = 20000;
+        int[][] fragments = new int[n][];
+        for (int i = 0; i < n; i++) {
+            fragments[i] = new int[]{1, 2, 3, 4, 5};
+        }
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            MetricTree tree = MetricTree.build(fragments, pool);
+            assertTrue(tree.getComputed() < 20L * n);
+            assertEquals(n, tree.range(new int[]{1, 2, 3, 4, 5}, 0).size());
+            assertEquals(0, tree.range(new int[]{7, 7, 7}, 2).size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test28() throws Exception {
+        Path dir = Files.createTempDirectory("join");
+        Path input = dir.resolve("test7.xml");
+        Path file = dir.resolve("tree.bin");
+        try {
+            Files.copy(Paths.get("src/test/methods/test7.xml"), input);
+            Properties conf = new Properties();
+            conf.setProperty("inputFile", input.toString());
+            conf.setProperty("level", "method");
+            conf.setProperty("metricTree", file.toString());
+            new Join(conf).process();
+            long stamp = MetricTree.read(file).getStamp();
+            // the same locations with other code
+            String xml = new String(Files.readAllBytes(input), StandardCharsets.UTF_8);
+            Files.write(input, xml.replace("return this;", "return null;").getBytes(StandardCharsets.UTF_8));
+            new Join(conf).process();
+            assertNotEquals(stamp, MetricTree.read(file).getStamp());
+            // the same code parsed at another language level
+            stamp = MetricTree.read(file).getStamp();
+            conf.setProperty("languageLevel", "JAVA_11");
+            new Join(conf).process();
+            assertNotEquals(stamp, MetricTree.read(file).getStamp());
+        } finally {
+            Files.deleteIfExists(dir.resolve("test7-join.xml"));
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Returns the tree distances of the clones in the output of
+     * {@code treedistance}.
+     */
+    private List<Integer> treeDistances(Properties conf, String input) throws Exception {
+        conf.setProperty("inputFile", "src/test/methods/" + input);
+        conf.setProperty("rename", "blind");
+        conf.setProperty("level", "method");
+        new TreeDistance(conf).process();
+        Path output = Paths.get("src/test/methods/" + input.replace(".xml", "-treedistance.xml"));
+        List<Integer> distances = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+                int i = line.indexOf(" treedistance=\"");
+                if (line.contains("<clone ") && i >= 0) {
+                    int start = i + " treedistance=\"".length();
+                    distances.add(Integer.valueOf(line.substring(start, line.indexOf('"', start))));
+                }
+            }
+        } finally {
+            Files.delete(output);
+        }
+        return distances;
+    }
+
+    @Test
+    public void test29() throws Exception {
+        assertEquals(Arrays.asList(1, 2), treeDistances(new Properties(), "test1.xml"));
+        assertEquals(Arrays.asList(1, 2, 2), treeDistances(new Properties(), "test7.xml"));
+        assertEquals(Arrays.asList(6), treeDistances(new Properties(), "test4.xml"));
+        // the identifiers are renamed blindly
+        assertEquals(Arrays.asList(0, 0, 0), treeDistances(new Properties(), "test12.xml"));
+        Properties conf = new Properties();
+        conf.setProperty("maxTreeDistance", "1");
+        assertEquals(Arrays.asList(1, Integer.MAX_VALUE, Integer.MAX_VALUE), treeDistances(conf, "test7.xml"));
+        // the trees are of Java only
+        conf.setProperty("language", "python");
+        try {
+            new TreeDistance(conf);
+            fail();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("invalid language"));
+        }
+    }
+
+    @Test
+    public void test30() throws Exception {
+        Path file = Files.createTempFile("test30", ".journal");
+        try {
+            String fileName = file.toString();
+            try (Journal journal = new Journal(fileName, 1, 30)) {
+                journal.append(0, 7, null, Journal.OK);
+            }
+            // a crash leaves a fragment of the entry of clone 15
+            Files.write(file, "1".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+            assertEquals(1, Journal.read(fileName, 30).size());
+            try (Journal journal = new Journal(fileName, 1, 30)) {
+                journal.append(5, 3, null, Journal.OK);
+            }
+            Map<Integer, Journal.Entry> entries = Journal.read(fileName, 30);
+            assertEquals(new HashSet<>(Arrays.asList(0, 5)), entries.keySet());
+            assertEquals(7, (int) entries.get(0).getDistance());
+            assertEquals(3, (int) entries.get(5).getDistance());
+            // a journal with a fragment of the stamp only
+            Files.write(file, "sta".getBytes(StandardCharsets.UTF_8));
+            assertTrue(Journal.read(fileName, 30).isEmpty());
+            try (Journal journal = new Journal(fileName, 1, 30)) {
+                journal.append(2, 1, null, Journal.OK);
+            }
+            assertEquals(1, (int) Journal.read(fileName, 30).get(2).getDistance());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void test31() throws Exception {
+        Path dir = Files.createTempDirectory("merge");
+        Path input = dir.resolve("test7.xml");
+        Path output = dir.resolve("test7-distance.xml");
+        try {
+            Files.copy(Paths.get("src/test/methods/test7.xml"), input);
+            Properties conf = new Properties();
+            conf.setProperty("inputFile", input.toString());
+            conf.setProperty("rename", "blind");
+            conf.setProperty("level", "method");
+            conf.setProperty("alignThreshold", "100");
+            conf.setProperty("sweep", "ignoreParentheses");
+            new EditDistance(conf).process();
+            List<String> expected = Files.readAllLines(output, StandardCharsets.UTF_8);
+            assertTrue(expected.contains("        <alignment>"));
+            assertTrue(expected.stream().anyMatch(line -> line.startsWith("        <variant ")));
+            Files.delete(output);
+            // the alignments and the variants are restored from the shards
+            conf.setProperty("shards", "2");
+            for (String shard : new String[]{"0", "1", "merge"}) {
+                conf.setProperty("shard", shard);
+                new EditDistance(conf).process();
+            }
+            assertEquals(expected, Files.readAllLines(output, StandardCharsets.UTF_8));
+        } finally {
+            for (int i = 0; i < 2; i++) {
+                Files.deleteIfExists(dir.resolve("test7-distance.xml.shard-" + i + "-of-2"));
+            }
+            for (Path p : new Path[]{input, output, dir}) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /**
+     * Returns the lines of the alignment of the first clone in the output of
+     * the similarity.
+     */
+    private List<String> lineAlignment(Properties conf) throws Exception {
+        conf.setProperty("inputFile", "src/test/methods/test7.xml");
+        conf.setProperty("level", "method");
+        conf.setProperty("alignThreshold", "0");
+        new Similarity(conf).process();
+        Path output = Paths.get("src/test/methods/test7-similarity.xml");
+        try {
+            List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+            int start = lines.indexOf("        <alignment>");
+            int end = lines.indexOf("        </alignment>");
+            return lines.subList(start + 1, end);
+        } finally {
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void test32() throws Exception {
+        Properties conf = new Properties();
+        conf.setProperty("language", "csharp");
+        List<String> alignment = lineAlignment(conf);
+        assertFalse(alignment.isEmpty());
+        // the lines in the source files (457-462 and 477-482)
+        for (String e : alignment) {
+            int i1 = e.indexOf("line1=\"");
+            int i2 = e.indexOf("line2=\"");
+            if (i1 >= 0) {
+                int line = Integer.parseInt(e.substring(i1 + 7, e.indexOf('"', i1 + 7)));
+                assertTrue(e, line >= 457 && line <= 462);
+            }
+            if (i2 >= 0) {
+                int line = Integer.parseInt(e.substring(i2 + 7, e.indexOf('"', i2 + 7)));
+                assertTrue(e, line >= 477 && line <= 482);
+            }
+        }
+        // the condition of the first fragment is on its second line
+        assertTrue(alignment.get(0).contains("line1=\"458\""));
+        // the lines of the pretty-printed code have no line numbers
+        alignment = lineAlignment(new Properties());
+        assertFalse(alignment.isEmpty());
+        for (String e : alignment) {
+            assertFalse(e, e.contains(" line1=") || e.contains(" line2="));
+        }
+    }
+
+    @Test
+    public void test33() throws Exception {
+        Path dir = Files.createTempDirectory("nearest");
+        Path input = dir.resolve("test7.xml");
+        Path query = dir.resolve("a&b<\"1\">.java");
+        Path output = dir.resolve("test7-nearest.xml");
+        try {
+            Files.copy(Paths.get("src/test/methods/test7.xml"), input);
+            NiCadSource src = readFile(input.toString()).getClones().get(0).getSources().get(0);
+            Files.write(query, src.getSourceCode().getBytes(StandardCharsets.UTF_8));
+            Properties conf = new Properties();
+            conf.setProperty("inputFile", input.toString());
+            conf.setProperty("level", "method");
+            conf.setProperty("query", query.toString());
+            new Nearest(conf).process();
+            // the file names are escaped in the attributes
+            Element e = (Element) DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(output.toFile()).getElementsByTagName("query").item(0);
+            assertEquals(query.toString(), e.getAttribute("file"));
+        } finally {
+            for (Path p : new Path[]{input, query, output, dir}) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package parser;
+
+import java.util.Arrays;
+import java.util.Properties;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class EquivalenceTest {
+
+    private Equivalence equivalence(String rename, String literals) {
+        Properties conf = new Properties();
+        conf.setProperty("rename", rename);
+        conf.setProperty("literals", literals);
+        return new Equivalence(conf);
+    }
+
+    private int[] encode(Equivalence eq, String code) {
+        return eq.encode(new StatementParser(new Properties()).parse(code, false).getTokens());
+    }
+
+    private boolean equal(Equivalence eq, String code1, String code2) {
+        return Arrays.equals(encode(eq, code1), encode(eq, code2));
+    }
+
+    @Test
+    public void testRenameNone() {
+        Equivalence eq = equivalence("none", "blind");
+        assertTrue(equal(eq, "a = b + a;", "a = b + a;"));
+        assertFalse(equal(eq, "a = b + a;", "x = y + x;"));
+        assertFalse(equal(eq, "a = b + a;", "a = c + a;"));
+        // the primitive types are not renamed either
+        assertFalse(equal(eq, "int a = 1;", "long a = 1;"));
+        assertTrue(equal(equivalence("blind", "blind"), "int a = 1;", "long b = 1;"));
+        // the literals are still blind
+        assertTrue(equal(eq, "a = 1;", "a = \"x\";"));
+    }
+
+    @Test
+    public void testLiteralsTyped() {
+        Equivalence eq = equivalence("blind", "typed");
+        assertTrue(equal(eq, "a = 1;", "a = 0x2F;"));
+        assertTrue(equal(eq, "a = 1.5;", "a = 2e3;"));
+        assertTrue(equal(eq, "a = \"x\";", "a = \"y\";"));
+        assertTrue(equal(eq, "a = true;", "a = false;"));
+        assertFalse(equal(eq, "a = 1;", "a = 1L;"));
+        assertFalse(equal(eq, "a = 1;", "a = 1.0;"));
+        assertFalse(equal(eq, "a = 'x';", "a = \"x\";"));
+        assertFalse(equal(eq, "a = 1;", "a = true;"));
+    }
+
+    @Test
+    public void testLiteralsNone() {
+        Equivalence eq = equivalence("blind", "none");
+        assertTrue(equal(eq, "a = 1;", "b = 1;"));
+        assertTrue(equal(eq, "a = \"x\";", "a = \"x\";"));
+        assertFalse(equal(eq, "a = 1;", "a = 2;"));
+        assertFalse(equal(eq, "a = \"x\";", "a = \"y\";"));
+        assertFalse(equal(eq, "a = true;", "a = false;"));
+        // the same text of another type
+        assertFalse(equal(eq, "a = 'x';", "a = \"x\";"));
+    }
+}
@@ -0,0 +1,110 @@
+package parser;
+
+import com.github.javaparser.JavaToken;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class StatementParserTest {
+
+    private List<String> lines(Parser parser, String code) {
+        return lines(parser.parseToLines(code, true));
+    }
+
+    private List<String> lines(Lines lines) {
+        List<String> result = new ArrayList<>();
+        for (Line line : lines.getLines()) {
+            StringBuilder sb = new StringBuilder();
+            for (JavaToken tok : line.getTokens()) {
+                sb.append(tok.getText()).append(' ');
+            }
+            result.add(sb.toString().trim());
+        }
+        return result;
+    }
+
+    private void test(Properties conf, String body) {
+        List<String> ml = lines(new MethodParser(conf), "void m() {" + body + "}");
+        List<String> sl = lines(new StatementParser(conf), body);
+        assertEquals(ml.subList(1, ml.size() - 1), sl);
+    }
+
+    @Test
+    public void testStatements() {
+        test(new Properties(), "int s = 0;\n"
+                + "for (int i = 0; i < n; i++) {\n"
+                + "  if (i % 2 == 0) { s += i; } else if (i > 5) s -= i; else { continue; }\n"
+                + "}\n"
+                + "switch (s) { case 0: s++; break; default: s--; }\n"
+                + "Runnable r = new Runnable() { public void run() { go(x -> x + 1); } };\n"
+                + "return s;");
+    }
+
+    @Test
+    public void testAddBlocks() {
+        Properties conf = new Properties();
+        conf.setProperty("addBlocks", "true");
+        List<String> sl = lines(new StatementParser(conf), "while (x) if (y) a(); else b(); for (;;) c();");
+        String[] expected = {"while ( x ) {", "if ( y ) {", "a ( ) ;", "}", "else {",
+            "b ( ) ;", "}", "}", "for ( ; ; ) {", "c ( ) ;", "}"};
+        assertArrayEquals(expected, sl.toArray());
+    }
+
+    @Test
+    public void testNormalizedTree() {
+        Properties conf = new Properties();
+        conf.setProperty("addBlocks", "true");
+        conf.setProperty("ignoreParentheses", "true");
+        Tree t1 = new StatementParser(conf).parseToTree("if (a) b((c)); else d = (e);", true, new Equivalence(conf));
+        Properties plain = new Properties();
+        Tree t2 = new StatementParser(plain).parseToTree("if (a) { b(c); } else { d = e; }", true, new Equivalence(plain));
+        assertArrayEquals(t2.getLabels(), t1.getLabels());
+        assertArrayEquals(t2.getLeftmost(), t1.getLeftmost());
+    }
+
+    @Test
+    public void testConstructorInvocation() {
+        List<String> sl = lines(new StatementParser(new Properties()), "super(a,\n b); this.a = a;");
+        assertEquals(2, sl.size());
+        assertEquals("super ( a , b ) ;", sl.get(0));
+        assertEquals("this . a = a ;", sl.get(1));
+    }
+
+    @Test
+    public void testVariants() {
+        String code = "@SuppressWarnings(\"x\") int a = -(1);\n"
+                + "if (a > (b)) a = -2; else while (c) d((e));";
+        String[] options = {"addBlocks", "ignoreAnnotations", "ignoreParentheses", "ignoreUnaryAtLiterals"};
+        List<Properties> variants = new ArrayList<>();
+        for (int v = 0; v < 1 << options.length; v++) {
+            Properties conf = new Properties();
+            for (int i = 0; i < options.length; i++) {
+                conf.setProperty(options[i], String.valueOf((v & (1 << i)) != 0));
+            }
+            variants.add(conf);
+        }
+        Parser parser = new StatementParser(new Properties());
+        List<Lines> lines = parser.parseToLinesVariants(code, variants);
+        List<Tokens> tokens = parser.parseVariants(code, variants);
+        for (int v = 0; v < variants.size(); v++) {
+            Parser p = new StatementParser(variants.get(v));
+            assertEquals(lines(p, code), lines(lines.get(v)));
+            List<String> expected = new ArrayList<>();
+            for (JavaToken tok : p.parse(code, true).getTokens()) {
+                expected.add(tok.getText());
+            }
+            List<String> actual = new ArrayList<>();
+            for (JavaToken tok : tokens.get(v).getTokens()) {
+                actual.add(tok.getText());
+            }
+            assertEquals(expected, actual);
+        }
+    }
+}
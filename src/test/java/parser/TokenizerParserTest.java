@@ -0,0 +1,119 @@
+package parser;
+
+import com.github.javaparser.JavaToken;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * JUnit tests.
+ *
+ * @author Zdenek Tronicek, tronicek@tarleton.edu
+ */
+public class TokenizerParserTest {
+
+    private TokenizerParser parser(String language) {
+        Properties conf = new Properties();
+        conf.setProperty("language", language);
+        return (TokenizerParser) Parser.instantiate(conf);
+    }
+
+    private List<String> texts(List<JavaToken> tokens) {
+        List<String> result = new ArrayList<>();
+        for (JavaToken tok : tokens) {
+            result.add(tok.getText());
+        }
+        return result;
+    }
+
+    private int[] encode(Equivalence eq, String language, String code) {
+        return eq.encode(parser(language).parse(code, true).getTokens());
+    }
+
+    @Test
+    public void testC() {
+        String code = "#include <stdio.h>\n"
+                + "#define MAX(a, b) \\\n  ((a) > (b) ? (a) : (b))\n"
+                + "int f(char *s) { /* comment */\n"
+                + "  long n = 0x1FUL + 1.5e-3f; // comment\n"
+                + "  if (s == NULL) return 'x';\n"
+                + "  s->len >>= 2;\n"
+                + "}";
+        List<JavaToken> tokens = parser("c").tokenize(code);
+        String[] expected = {"int", "f", "(", "char", "*", "s", ")", "{",
+            "long", "n", "=", "0x1FUL", "+", "1.5e-3f", ";",
+            "if", "(", "s", "==", "NULL", ")", "return", "'x'", ";",
+            "s", "->", "len", ">>=", "2", ";", "}"};
+        assertArrayEquals(expected, texts(tokens).toArray());
+        assertEquals(JavaToken.Kind.LONG_LITERAL.getKind(), tokens.get(11).getKind());
+        assertEquals(JavaToken.Kind.FLOATING_POINT_LITERAL.getKind(), tokens.get(13).getKind());
+        assertEquals(JavaToken.Kind.NULL.getKind(), tokens.get(19).getKind());
+        assertEquals(JavaToken.Kind.CHARACTER_LITERAL.getKind(), tokens.get(22).getKind());
+        assertEquals(JavaToken.Kind.ARROW.getKind(), tokens.get(25).getKind());
+        assertEquals(5, tokens.get(11).getRange().get().begin.line);
+        assertEquals(12, tokens.get(11).getRange().get().begin.column);
+    }
+
+    @Test
+    public void testCSharp() {
+        String code = "var p = @\"c:\\dir\"\"x\"\"\" + $\"{a}\";\n"
+                + "bool b = x?.y ?? base.z;\n"
+                + "decimal d = 1.5m;";
+        List<JavaToken> tokens = parser("csharp").tokenize(code);
+        String[] expected = {"var", "p", "=", "@\"c:\\dir\"\"x\"\"\"", "+", "$\"{a}\"", ";",
+            "bool", "b", "=", "x", "?.", "y", "??", "base", ".", "z", ";",
+            "decimal", "d", "=", "1.5m", ";"};
+        assertArrayEquals(expected, texts(tokens).toArray());
+        assertEquals(JavaToken.Kind.STRING_LITERAL.getKind(), tokens.get(3).getKind());
+        assertEquals(JavaToken.Kind.BOOLEAN.getKind(), tokens.get(7).getKind());
+        assertEquals(TokenizerParser.OTHER, tokens.get(11).getKind());
+        assertEquals(JavaToken.Kind.SUPER.getKind(), tokens.get(14).getKind());
+        assertEquals(TokenizerParser.OTHER, tokens.get(18).getKind());
+        assertEquals(JavaToken.Kind.FLOATING_POINT_LITERAL.getKind(), tokens.get(21).getKind());
+    }
+
+    @Test
+    public void testPython() {
+        String code = "def f(x):  # comment\n"
+                + "    s = '''a\n'b'\n'''\n"
+                + "    if x is None and rb'\\x00' != f\"{x}\":\n"
+                + "        return x ** 2 // 3j\n";
+        Lines lines = parser("python").parseToLines(code, true);
+        assertEquals(4, lines.getLines().size());
+        List<JavaToken> tokens = parser("python").tokenize(code);
+        String[] expected = {"def", "f", "(", "x", ")", ":", "s", "=", "'''a\n'b'\n'''",
+            "if", "x", "is", "None", "and", "rb'\\x00'", "!=", "f\"{x}\"", ":",
+            "return", "x", "**", "2", "//", "3j"};
+        assertArrayEquals(expected, texts(tokens).toArray());
+        assertEquals(JavaToken.Kind.STRING_LITERAL.getKind(), tokens.get(8).getKind());
+        assertEquals(JavaToken.Kind.NULL.getKind(), tokens.get(12).getKind());
+        assertEquals(JavaToken.Kind.FLOATING_POINT_LITERAL.getKind(), tokens.get(23).getKind());
+        // an unterminated raw string ends at the end of the line
+        tokens = parser("python").tokenize("s = r'a\nb = 1\n");
+        assertEquals(Arrays.asList("s", "=", "r'a", "b", "=", "1"), texts(tokens));
+    }
+
+    @Test
+    public void testEquivalence() {
+        Properties conf = new Properties();
+        conf.setProperty("rename", "consistent");
+        conf.setProperty("literals", "typed");
+        Equivalence eq = new Equivalence(conf);
+        int[] c1 = encode(eq, "c", "a = b + a * 2; x->y;");
+        int[] c2 = encode(eq, "c", "p = q + p * 7; u->v;");
+        int[] c3 = encode(eq, "c", "p = q + r * 7; u->v;");
+        int[] c4 = encode(eq, "c", "p = q + p * 7.0; u->v;");
+        assertArrayEquals(c1, c2);
+        assertFalse(Arrays.equals(c1, c3));
+        assertFalse(Arrays.equals(c1, c4));
+        // the operators that Java does not have are equal iff they are the same
+        int[] p1 = encode(eq, "python", "a ** b");
+        int[] p2 = encode(eq, "python", "a ** b");
+        int[] p3 = encode(eq, "python", "a // b");
+        assertArrayEquals(p1, p2);
+        assertFalse(Arrays.equals(p1, p3));
+    }
+}
@@ -0,0 +1,34 @@
+public class Stack {
+
+    private Object[] items = new Object[16];
+    private int size;
+
+    public void push(Object item) {
+        if (size == items.length) {
+            items = java.util.Arrays.copyOf(items, size * 2);
+        }
+        items[size++] = item;
+    }
+
+    public void add(Object obj) {
+        if (size == items.length) {
+            items = java.util.Arrays.copyOf(items, size + 16);
+        }
+        items[size++] = obj;
+    }
+
+    public Object pop() {
+        Object item = items[--size];
+        items[size] = null;
+        return item;
+    }
+
+    public Object poll() {
+        if (size == 0) {
+            return null;
+        }
+        Object item = items[--size];
+        items[size] = null;
+        return item;
+    }
+}